@@ -26,6 +26,7 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.zxing.BarcodeFormat;
+import com.jeffmony.orcode.utils.CodeTask;
 import com.jeffmony.orcode.utils.CodeUtils;
 
 /**
@@ -35,6 +36,7 @@ public class CodeActivity extends AppCompatActivity {
 
     private TextView tvTitle;
     private ImageView ivCode;
+    private CodeTask<Bitmap> codeTask;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -57,16 +59,12 @@ public class CodeActivity extends AppCompatActivity {
      * @param content
      */
     private void createQRCode(String content){
-        new Thread(() -> {
-            //生成二维码相关放在子线程里面
-            Bitmap logo = BitmapFactory.decodeResource(getResources(),R.drawable.logo);
-            Bitmap bitmap =  CodeUtils.createQRCode(content,600,logo);
-            runOnUiThread(()->{
-                //显示二维码
-                ivCode.setImageBitmap(bitmap);
-            });
-        }).start();
-
+        //生成二维码相关在后台线程中执行
+        Bitmap logo = BitmapFactory.decodeResource(getResources(),R.drawable.logo);
+        codeTask = CodeUtils.createQRCodeAsync(content,600,logo,null,bitmap -> {
+            //显示二维码
+            ivCode.setImageBitmap(bitmap);
+        });
     }
 
     /**
@@ -74,17 +72,20 @@ public class CodeActivity extends AppCompatActivity {
      * @param content
      */
     private void createBarCode(String content){
-        new Thread(() -> {
-            //生成条形码相关放在子线程里面
-            Bitmap bitmap = CodeUtils.createBarCode(content, BarcodeFormat.CODE_128,800,200,null,true);
-            runOnUiThread(()->{
-                //显示条形码
-                ivCode.setImageBitmap(bitmap);
-            });
-        }).start();
+        //生成条形码相关在后台线程中执行
+        codeTask = CodeUtils.createBarCodeAsync(content, BarcodeFormat.CODE_128,800,200,null,true,null,bitmap -> {
+            //显示条形码
+            ivCode.setImageBitmap(bitmap);
+        });
     }
 
-
+    @Override
+    protected void onDestroy() {
+        if(codeTask != null){
+            codeTask.cancel(true);
+        }
+        super.onDestroy();
+    }
 
     public void onClick(View v){
         switch (v.getId()){
@@ -3,9 +3,9 @@ package com.jeffmony.orcodedemo;
 import android.Manifest;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.text.TextUtils;
 import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
@@ -14,10 +14,11 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.ActivityOptionsCompat;
 
+import com.google.zxing.Result;
 import com.jeffmony.orcode.CaptureActivity;
 import com.jeffmony.orcode.Intents;
+import com.jeffmony.orcode.utils.CodeTask;
 import com.jeffmony.orcode.utils.CodeUtils;
-import com.jeffmony.orcodedemo.utils.UriUtils;
 
 import java.util.List;
 
@@ -39,6 +40,7 @@ public class MainActivity extends AppCompatActivity implements EasyPermissions.P
     private Class<?> cls;
     private String title;
     private boolean isContinuousScan;
+    private CodeTask<Result> parseTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,27 +66,31 @@ public class MainActivity extends AppCompatActivity implements EasyPermissions.P
     }
 
     private void parsePhoto(Intent data){
-        final String path = UriUtils.getImagePath(this,data);
-        if(TextUtils.isEmpty(path)){
+        final Uri uri = data.getData();
+        if(uri == null){
             return;
         }
-        //异步解析
-        asyncThread(new Runnable() {
+        //异步解析，页面关闭时取消
+        if(parseTask != null){
+            parseTask.cancel(true);
+        }
+        parseTask = CodeUtils.parseCodeAsync(this, uri, new CodeTask.Callback<Result>() {
             @Override
-            public void run() {
-                final String result = CodeUtils.parseCode(path);
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Toast.makeText(getContext(),result, Toast.LENGTH_SHORT).show();
-                    }
-                });
-
+            public void onSuccess(Result result) {
+                Toast.makeText(getContext(),result != null ? result.getText() : null, Toast.LENGTH_SHORT).show();
             }
         });
 
     }
 
+    @Override
+    protected void onDestroy() {
+        if(parseTask != null){
+            parseTask.cancel(true);
+        }
+        super.onDestroy();
+    }
+
     private Context getContext(){
         return this;
     }
@@ -124,10 +130,6 @@ public class MainActivity extends AppCompatActivity implements EasyPermissions.P
         }
     }
 
-    private void asyncThread(Runnable runnable){
-        new Thread(runnable).start();
-    }
-
     /**
      * 扫码
      * @param cls
@@ -0,0 +1,129 @@
+package com.jeffmony.orcode.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.jeffmony.orcode.decode.CodeDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays frames through the strategy chain the scanner runs on every preview frame: hybrid,
+ * inverted, global histogram, then rotated, stopping at the first pass that finds a code.
+ *
+ * Each invocation decodes the next frame of the corpus, so throughput is in frames per second
+ * and the sample mode gives the latency distribution per frame. The gc profiler is enabled in
+ * the build script for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DecodeBenchmark {
+
+    /**
+     * The formats the scanner decodes by default: 1D product and industrial, QR and Data Matrix.
+     */
+    private static final Set<BarcodeFormat> SCANNER_FORMATS = EnumSet.of(
+            BarcodeFormat.UPC_A, BarcodeFormat.UPC_E, BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+            BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED,
+            BarcodeFormat.CODE_39, BarcodeFormat.CODE_93, BarcodeFormat.CODE_128, BarcodeFormat.ITF,
+            BarcodeFormat.CODABAR,
+            BarcodeFormat.QR_CODE, BarcodeFormat.DATA_MATRIX);
+
+    @Param({"QR", "ONE_D", "VERTICAL", "LOW_CONTRAST"})
+    public Frames.Kind kind;
+
+    private Frames.Frame[] mFrames;
+    private CodeDecoder mDecoder;
+    private int mIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Frames.Frame> frames = Frames.load(kind);
+        mFrames = frames.toArray(new Frames.Frame[0]);
+
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, SCANNER_FORMATS);
+        mDecoder = new CodeDecoder(hints);
+
+        if (System.getProperty(Frames.CORPUS_PROPERTY) == null) {
+            int decoded = 0;
+            for (Frames.Frame frame : mFrames) {
+                if (decodeNv21(frame) != null) {
+                    decoded++;
+                }
+            }
+            if (decoded < mFrames.length) {
+                // The synthetic frames are all meant to decode; timing misses would measure the wrong thing.
+                throw new IllegalStateException("Only " + decoded + " of " + mFrames.length
+                        + " synthetic " + kind + " frames decode");
+            }
+        }
+    }
+
+    /**
+     * The camera path: the Y plane of an NV21 preview frame.
+     */
+    @Benchmark
+    public Result nv21() {
+        return decodeNv21(next());
+    }
+
+    /**
+     * The picture path, as CodeUtils decodes a picture from the gallery: the ARGB pixels are turned
+     * into a luminance plane, which is decoded as a {@link PlanarYUVLuminanceSource}. That source
+     * can't be rotated, so vertical codes are missed here and this measures the full chain failing.
+     */
+    @Benchmark
+    public Result image() {
+        return decodeImage(next());
+    }
+
+    private Result decodeImage(Frames.Frame frame) {
+        byte[] luminance = luminance(frame.argb);
+        return mDecoder.decode(new PlanarYUVLuminanceSource(luminance, frame.width, frame.height,
+                0, 0, frame.width, frame.height, false));
+    }
+
+    /**
+     * @return The luminance of each pixel, with the same weights CodeUtils reads a bitmap with.
+     */
+    private static byte[] luminance(int[] argb) {
+        byte[] luminance = new byte[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            int pixel = argb[i];
+            int r = (pixel >> 16) & 0xff;
+            int g = (pixel >> 8) & 0xff;
+            int b = pixel & 0xff;
+            luminance[i] = (byte) ((r + 2 * g + b) / 4);
+        }
+        return luminance;
+    }
+
+    private Result decodeNv21(Frames.Frame frame) {
+        return mDecoder.decodeYuv(frame.nv21, frame.width, frame.height, 0, 0, frame.width, frame.height);
+    }
+
+    private Frames.Frame next() {
+        Frames.Frame frame = mFrames[mIndex];
+        mIndex = (mIndex + 1) % mFrames.length;
+        return frame;
+    }
+}
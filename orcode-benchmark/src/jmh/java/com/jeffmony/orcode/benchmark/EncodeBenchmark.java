@@ -0,0 +1,94 @@
+package com.jeffmony.orcode.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.jeffmony.orcode.encode.BitMatrixRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways of turning an encoded code into pixels: the per-pixel loop CodeUtils used to
+ * run, the row-based renderer into a whole image, and the row-based renderer a band at a time,
+ * as CodeUtils now fills its bitmaps. {@link #encode()} gives the cost of the encoding itself for
+ * scale.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodeBenchmark {
+
+    private static final int ON = 0xff000000;
+    private static final int OFF = 0xffffffff;
+    private static final String CONTENT = "https://example.com/order/20200327-000123";
+
+    @Param({"QR_CODE", "CODE_128"})
+    public BarcodeFormat format;
+
+    @Param({"200", "600", "1200"})
+    public int size;
+
+    private BitMatrix mMatrix;
+    private int[] mPixels;
+
+    @Setup(Level.Trial)
+    public void setUp() throws WriterException {
+        mMatrix = encode();
+        mPixels = new int[mMatrix.getWidth() * mMatrix.getHeight()];
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return new MultiFormatWriter().encode(CONTENT, format, size, size);
+    }
+
+    /**
+     * The loop CodeUtils used before: one {@code BitMatrix#get} per pixel into a new array.
+     */
+    @Benchmark
+    public int[] perPixel() {
+        BitMatrix matrix = mMatrix;
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = matrix.get(x, y) ? ON : OFF;
+            }
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] rows() {
+        return BitMatrixRenderer.render(mMatrix, ON, OFF);
+    }
+
+    @Benchmark
+    public int[] rowsReused() {
+        return BitMatrixRenderer.render(mMatrix, ON, OFF, mPixels);
+    }
+
+    @Benchmark
+    public void bands(final Blackhole blackhole) {
+        BitMatrixRenderer.render(mMatrix, ON, OFF, new BitMatrixRenderer.PixelSink() {
+            @Override
+            public void setPixels(int[] pixels, int top, int rows) {
+                blackhole.consume(pixels);
+            }
+        });
+    }
+}
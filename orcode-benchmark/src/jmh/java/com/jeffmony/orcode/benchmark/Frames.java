@@ -0,0 +1,228 @@
+package com.jeffmony.orcode.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The frames the benchmarks decode, each held both as an NV21 preview frame and as ARGB pixels.
+ *
+ * Recorded frames are read from the directory named by the {@code orcode.corpus} system
+ * property. A file belongs to a {@link Kind} by its name prefix: {@code qr-}, {@code oned-},
+ * {@code vertical-} or {@code lowcontrast-}. NV21 dumps must end in {@code -<width>x<height>.nv21};
+ * PNG and JPEG images are converted. Kinds without recorded frames fall back to synthetic ones,
+ * generated from a fixed seed so that every run decodes the same pixels.
+ */
+final class Frames {
+
+    static final String CORPUS_PROPERTY = "orcode.corpus";
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int SYNTHETIC_COUNT = 8;
+    private static final Pattern NV21_NAME = Pattern.compile(".*-(\\d+)x(\\d+)\\.nv21");
+
+    enum Kind {
+        /** A QR code, as the scanner usually sees it. */
+        QR("qr-"),
+        /** A horizontal Code 128 barcode. */
+        ONE_D("oned-"),
+        /** A Code 128 barcode turned by 90 degrees, only found by the rotated pass. */
+        VERTICAL("vertical-"),
+        /** A QR code printed grey on grey under uneven light. */
+        LOW_CONTRAST("lowcontrast-");
+
+        final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    static final class Frame {
+        final String name;
+        final int width;
+        final int height;
+        /** The Y plane followed by the interleaved VU plane. */
+        final byte[] nv21;
+        final int[] argb;
+
+        Frame(String name, int width, int height, byte[] nv21) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.nv21 = nv21;
+            this.argb = new int[width * height];
+            for (int i = 0; i < argb.length; i++) {
+                int y = nv21[i] & 0xff;
+                argb[i] = 0xff000000 | (y << 16) | (y << 8) | y;
+            }
+        }
+
+        Frame(String name, int width, int height, int[] argb) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.argb = argb;
+            this.nv21 = newNv21(width, height);
+            for (int i = 0; i < argb.length; i++) {
+                int r = (argb[i] >> 16) & 0xff;
+                int g = (argb[i] >> 8) & 0xff;
+                int b = argb[i] & 0xff;
+                // The same weights as RGBLuminanceSource.
+                nv21[i] = (byte) ((r + 2 * g + b) / 4);
+            }
+        }
+    }
+
+    private Frames() {
+    }
+
+    /**
+     * @return The recorded frames of the kind if there are any, otherwise synthetic ones.
+     */
+    static List<Frame> load(Kind kind) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        String corpus = System.getProperty(CORPUS_PROPERTY);
+        if (corpus != null && !corpus.isEmpty()) {
+            File[] files = new File(corpus).listFiles();
+            if (files == null) {
+                throw new IOException("Not a directory: " + corpus);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().startsWith(kind.prefix)) {
+                    Frame frame = read(file);
+                    if (frame != null) {
+                        frames.add(frame);
+                    }
+                }
+            }
+        }
+        if (frames.isEmpty()) {
+            Random random = new Random(kind.ordinal());
+            for (int i = 0; i < SYNTHETIC_COUNT; i++) {
+                frames.add(synthesize(kind, i, random));
+            }
+        }
+        return frames;
+    }
+
+    private static Frame read(File file) throws IOException {
+        String name = file.getName();
+        Matcher matcher = NV21_NAME.matcher(name);
+        if (matcher.matches()) {
+            int width = Integer.parseInt(matcher.group(1));
+            int height = Integer.parseInt(matcher.group(2));
+            byte[] nv21 = Files.readAllBytes(file.toPath());
+            if (nv21.length < width * height) {
+                throw new IOException(name + " is shorter than its " + width + "x" + height + " Y plane");
+            }
+            return new Frame(name, width, height, nv21);
+        }
+        String lower = name.toLowerCase(Locale.US);
+        if (lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new IOException("Unreadable image: " + name);
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            return new Frame(name, width, height, image.getRGB(0, 0, width, height, null, 0, width));
+        }
+        return null;
+    }
+
+    private static Frame synthesize(Kind kind, int index, Random random) {
+        String content = kind.name().toLowerCase(Locale.US) + "-" + index + "-" + Long.toHexString(random.nextLong());
+        boolean qr = kind == Kind.QR || kind == Kind.LOW_CONTRAST;
+        BitMatrix matrix;
+        try {
+            Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+            hints.put(EncodeHintType.MARGIN, qr ? 4 : 10);
+            matrix = qr ? new MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0, hints)
+                    : new MultiFormatWriter().encode(content, BarcodeFormat.CODE_128, 0, 0, hints);
+        } catch (WriterException e) {
+            throw new IllegalStateException(e);
+        }
+
+        int dark = kind == Kind.LOW_CONTRAST ? 105 : 30;
+        int light = kind == Kind.LOW_CONTRAST ? 145 : 220;
+        byte[] nv21 = newNv21(WIDTH, HEIGHT);
+        // A light background with a horizontal fall-off, as under a lamp off to one side.
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                nv21[y * WIDTH + x] = (byte) (light - 20 * x / WIDTH);
+            }
+        }
+
+        boolean vertical = kind == Kind.VERTICAL;
+        int codeWidth = vertical ? matrix.getHeight() : matrix.getWidth();
+        int codeHeight = vertical ? matrix.getWidth() : matrix.getHeight();
+        int module;
+        int barHeight = 1;
+        if (qr) {
+            module = (HEIGHT / 2 + random.nextInt(HEIGHT / 4)) / codeWidth;
+        } else if (vertical) {
+            module = (HEIGHT * 3 / 4) / codeHeight;
+            barHeight = WIDTH / 5;
+        } else {
+            module = (WIDTH * 3 / 4) / codeWidth;
+            barHeight = HEIGHT / 5;
+        }
+        module = Math.max(module, 1);
+        int drawWidth = vertical ? barHeight : codeWidth * module;
+        int drawHeight = qr ? codeHeight * module : vertical ? codeHeight * module : barHeight;
+        int left = (WIDTH - drawWidth) / 2 + random.nextInt(41) - 20;
+        int top = (HEIGHT - drawHeight) / 2 + random.nextInt(41) - 20;
+        for (int y = 0; y < drawHeight; y++) {
+            for (int x = 0; x < drawWidth; x++) {
+                int px = left + x;
+                int py = top + y;
+                boolean set;
+                if (qr) {
+                    set = matrix.get(x / module, y / module);
+                } else if (vertical) {
+                    set = matrix.get(y / module, 0);
+                } else {
+                    set = matrix.get(x / module, 0);
+                }
+                int offset = py * WIDTH + px;
+                int background = nv21[offset] & 0xff;
+                nv21[offset] = (byte) (set ? background * dark / light : background);
+            }
+        }
+
+        // Sensor noise.
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            int value = (nv21[i] & 0xff) + (int) (random.nextGaussian() * 3);
+            nv21[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return new Frame(kind + "-" + index, WIDTH, HEIGHT, nv21);
+    }
+
+    private static byte[] newNv21(int width, int height) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        // Grey chroma; the decoders only read the Y plane.
+        Arrays.fill(nv21, width * height, nv21.length, (byte) 128);
+        return nv21;
+    }
+}
@@ -0,0 +1,135 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Decodes a code from raw pixels, trying each {@link DecodeStrategy} in turn until one succeeds.
+ * This is a {@link FrameDecoder} with none of the scanner's stages but the passes turned on.
+ * It needs nothing but the pixels, so the same decoding runs on a device, on a server or in a
+ * benchmark.
+ *
+ * Frames can be passed as the Y plane of a YUV image, as ARGB pixels, or as any
+ * {@link LuminanceSource}. The {@link DecodeStrategy#ROTATED} pass only applies to sources that
+ * can be rotated, and to YUV frames, which are read rotated in place.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class CodeDecoder {
+
+    /**
+     * Tells a decode in progress to stop. It is checked before each pass, so a pass already
+     * running is finished first.
+     */
+    public interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private final FrameDecoder mFrameDecoder;
+    private Cancellation mCancellation;
+    /**
+     * Crop-sized scratch array reused by rotated YUV sources from one call to the next.
+     */
+    private byte[] mRotatedMatrix;
+
+    /**
+     * Decodes with a {@link FormatReader} for the hinted formats, trying the passes in their
+     * declared order.
+     */
+    public CodeDecoder(Map<DecodeHintType, ?> hints) {
+        this(new FormatReader(hints), hints, null);
+    }
+
+    /**
+     * @param reader    The reader every pass uses.
+     * @param hints     The hints every pass decodes with.
+     * @param scheduler Orders the passes by their recent success rate and cost; {@code null} to
+     *                  try them in their declared order.
+     */
+    public CodeDecoder(Reader reader, Map<DecodeHintType, ?> hints, DecodeStrategyScheduler scheduler) {
+        this.mFrameDecoder = new FrameDecoder(reader, hints).setScheduler(scheduler);
+    }
+
+    /**
+     * @param strategies The passes to try; all of them by default.
+     */
+    public CodeDecoder setStrategies(Collection<DecodeStrategy> strategies) {
+        mFrameDecoder.setStrategies(strategies);
+        return this;
+    }
+
+    /**
+     * @param cancellation Checked before each pass; once cancelled the decode returns
+     *                     {@code null}. {@code null} to never cancel.
+     */
+    public CodeDecoder setCancellation(Cancellation cancellation) {
+        mCancellation = cancellation;
+        return this;
+    }
+
+    /**
+     * @return The result, or {@code null} if no pass found a code.
+     */
+    public Result decode(final LuminanceSource source) {
+        return decode(new FrameDecoder.Frame() {
+            @Override
+            public LuminanceSource getSource() {
+                return source;
+            }
+
+            @Override
+            public LuminanceSource getRotatedSource() {
+                return source.isRotateSupported() ? source.rotateCounterClockwise() : null;
+            }
+        });
+    }
+
+    /**
+     * Decodes a crop of the Y plane of a YUV frame, such as an NV21 camera preview frame.
+     *
+     * @param yuv        The frame; only its first {@code dataWidth * dataHeight} bytes are read.
+     * @param dataWidth  The width of the frame.
+     * @param dataHeight The height of the frame.
+     * @return The result, or {@code null} if no pass found a code.
+     */
+    public Result decodeYuv(final byte[] yuv, final int dataWidth, final int dataHeight,
+                            final int left, final int top, final int width, final int height) {
+        final LuminanceSource source = new PlanarYUVLuminanceSource(yuv, dataWidth, dataHeight,
+                left, top, width, height, false);
+        return decode(new FrameDecoder.Frame() {
+            @Override
+            public LuminanceSource getSource() {
+                return source;
+            }
+
+            @Override
+            public LuminanceSource getRotatedSource() {
+                // The same crop turned 90 degrees clockwise, so that its left edge is now its top.
+                RotatedPlanarYUVLuminanceSource rotated = new RotatedPlanarYUVLuminanceSource(yuv,
+                        dataWidth, dataHeight, dataHeight - top - height, left, height, width, mRotatedMatrix);
+                mRotatedMatrix = rotated.getMatrixBuffer();
+                return rotated;
+            }
+        });
+    }
+
+    /**
+     * Decodes an image given as ARGB pixels, row after row.
+     *
+     * @return The result, or {@code null} if no pass found a code.
+     */
+    public Result decodePixels(int[] pixels, int width, int height) {
+        return decode(new RGBLuminanceSource(width, height, pixels));
+    }
+
+    private Result decode(FrameDecoder.Frame frame) {
+        return mFrameDecoder.decode(frame, mCancellation).getResult();
+    }
+}
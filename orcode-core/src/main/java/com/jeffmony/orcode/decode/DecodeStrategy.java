@@ -0,0 +1,46 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * The binarization passes tried on a luminance source, listed in the order they have always been
+ * tried in.
+ */
+public enum DecodeStrategy {
+
+    /**
+     * {@link HybridBinarizer} on the source as is.
+     */
+    HYBRID,
+    /**
+     * {@link HybridBinarizer} on the inverted source, for light codes on a dark background.
+     */
+    HYBRID_INVERTED,
+    /**
+     * {@link GlobalHistogramBinarizer}, which copes better with low-contrast prints.
+     */
+    GLOBAL_HISTOGRAM,
+    /**
+     * {@link HybridBinarizer} on the source rotated by 90 degrees, for vertical 1D codes. The
+     * caller is responsible for supplying the rotated source.
+     */
+    ROTATED;
+
+    /**
+     * @param source The source to binarize; for {@link #ROTATED} the already rotated source.
+     * @return The bitmap this strategy hands to the reader.
+     */
+    public BinaryBitmap binarize(LuminanceSource source) {
+        switch (this) {
+            case HYBRID_INVERTED:
+                return new BinaryBitmap(new HybridBinarizer(source.invert()));
+            case GLOBAL_HISTOGRAM:
+                return new BinaryBitmap(new GlobalHistogramBinarizer(source));
+            default:
+                return new BinaryBitmap(new HybridBinarizer(source));
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.Result;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides in which order the {@link DecodeStrategy} passes are tried on a source, based on how
+ * often and how cheaply each one succeeded over a sliding window of recent attempts.
+ *
+ * Passes are ordered by success rate divided by average cost, which minimizes the expected time
+ * to the first success when the passes succeed independently. A pass that failed every attempt in
+ * a full window while others did succeed is skipped, except on every
+ * {@link #EXPLORE_INTERVAL}th decode so it gets the chance to catch up when conditions change.
+ * Passes with fewer than {@link #MIN_SAMPLES} attempts are not ranked and run after the ranked
+ * ones. Until some ranked pass has succeeded, or when adaptive ordering is turned off, the passes
+ * run in their declared order; statistics are recorded either way.
+ *
+ * One instance may be shared by several decoding threads.
+ */
+public final class DecodeStrategyScheduler {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64;
+
+    private static final int MIN_SAMPLES = 8;
+    private static final int EXPLORE_INTERVAL = 16;
+
+    private static final DecodeStrategy[] STRATEGIES = DecodeStrategy.values();
+
+    /**
+     * Runs one pass; implemented by whoever owns the reader and the luminance source.
+     */
+    public interface StrategyRunner {
+        /**
+         * @param strategy The pass to run.
+         * @return The result, or {@code null} if the pass does not apply to this source, in which
+         * case it is not counted.
+         * @throws Exception if the pass ran but found nothing.
+         */
+        Result run(DecodeStrategy strategy) throws Exception;
+
+        /**
+         * Checked before each pass.
+         * @return {@code true} to give up on the remaining passes.
+         */
+        boolean isCancelled();
+    }
+
+    private final int mWindowSize;
+    private final Window[] mWindows;
+    private boolean mAdaptive;
+    private long mDecodeCount;
+
+    public DecodeStrategyScheduler() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public DecodeStrategyScheduler(int windowSize) {
+        this.mWindowSize = Math.max(MIN_SAMPLES, windowSize);
+        mWindows = new Window[STRATEGIES.length];
+        for (int i = 0; i < mWindows.length; i++) {
+            mWindows[i] = new Window(mWindowSize);
+        }
+        mAdaptive = true;
+    }
+
+    /**
+     * @param adaptive {@code false} to always run the passes in their declared order.
+     */
+    public synchronized void setAdaptive(boolean adaptive) {
+        this.mAdaptive = adaptive;
+    }
+
+    public synchronized boolean isAdaptive() {
+        return mAdaptive;
+    }
+
+    /**
+     * Runs the enabled passes in the scheduled order until one of them succeeds, recording the
+     * outcome and cost of each.
+     *
+     * @param enabled The passes that may run.
+     * @param runner Runs a single pass.
+     * @return The first result found, or {@code null}.
+     */
+    public Result decode(Collection<DecodeStrategy> enabled, StrategyRunner runner) {
+        for (DecodeStrategy strategy : order(enabled)) {
+            if (runner.isCancelled()) {
+                return null;
+            }
+            long start = System.nanoTime();
+            Result result;
+            try {
+                result = runner.run(strategy);
+                if (result == null) {
+                    continue;
+                }
+            } catch (Exception e) {
+                record(strategy, false, System.nanoTime() - start);
+                continue;
+            }
+            record(strategy, true, System.nanoTime() - start);
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * Runs the enabled passes in their declared order without keeping any statistics.
+     */
+    public static Result decodeInOrder(Collection<DecodeStrategy> enabled, StrategyRunner runner) {
+        for (DecodeStrategy strategy : STRATEGIES) {
+            if (!enabled.contains(strategy)) {
+                continue;
+            }
+            if (runner.isCancelled()) {
+                return null;
+            }
+            try {
+                Result result = runner.run(strategy);
+                if (result != null) {
+                    return result;
+                }
+            } catch (Exception e) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The enabled passes, in the order the next decode will try them.
+     */
+    public synchronized List<DecodeStrategy> order(Collection<DecodeStrategy> enabled) {
+        List<DecodeStrategy> order = new ArrayList<>(enabled.size());
+        for (DecodeStrategy strategy : STRATEGIES) {
+            if (enabled.contains(strategy)) {
+                order.add(strategy);
+            }
+        }
+        mDecodeCount++;
+        if (!mAdaptive || order.size() < 2) {
+            return order;
+        }
+        // Passes that rarely get to run (because earlier ones usually succeed) keep their place
+        // behind the ones that have enough samples to be ranked.
+        List<DecodeStrategy> ranked = new ArrayList<>(order.size());
+        List<DecodeStrategy> unranked = new ArrayList<>(order.size());
+        int successes = 0;
+        for (DecodeStrategy strategy : order) {
+            Window window = mWindows[strategy.ordinal()];
+            if (window.mCount < MIN_SAMPLES) {
+                unranked.add(strategy);
+            } else {
+                ranked.add(strategy);
+                successes += window.mSuccesses;
+            }
+        }
+        if (successes == 0) {
+            // Nothing to learn from yet, e.g. no code has been in view.
+            return order;
+        }
+
+        if (mDecodeCount % EXPLORE_INTERVAL != 0) {
+            for (int i = ranked.size() - 1; i >= 0; i--) {
+                Window window = mWindows[ranked.get(i).ordinal()];
+                if (window.mCount >= mWindowSize && window.mSuccesses == 0) {
+                    ranked.remove(i);
+                }
+            }
+        }
+        // Stable, so passes with equal scores keep their declared order.
+        final double[] scores = new double[STRATEGIES.length];
+        for (DecodeStrategy strategy : ranked) {
+            scores[strategy.ordinal()] = mWindows[strategy.ordinal()].score();
+        }
+        Collections.sort(ranked, new Comparator<DecodeStrategy>() {
+            @Override
+            public int compare(DecodeStrategy lhs, DecodeStrategy rhs) {
+                return Double.compare(scores[rhs.ordinal()], scores[lhs.ordinal()]);
+            }
+        });
+        ranked.addAll(unranked);
+        return ranked;
+    }
+
+    /**
+     * Records the outcome of one pass.
+     *
+     * @param costNanos How long the pass took.
+     */
+    public synchronized void record(DecodeStrategy strategy, boolean success, long costNanos) {
+        mWindows[strategy.ordinal()].add(success, costNanos);
+    }
+
+    /**
+     * Forgets everything learned so far.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < mWindows.length; i++) {
+            mWindows[i] = new Window(mWindowSize);
+        }
+        mDecodeCount = 0;
+    }
+
+    /**
+     * @return A snapshot of the statistics of every pass over the current window.
+     */
+    public synchronized List<Statistics> getStatistics() {
+        List<Statistics> statistics = new ArrayList<>(STRATEGIES.length);
+        for (DecodeStrategy strategy : STRATEGIES) {
+            Window window = mWindows[strategy.ordinal()];
+            statistics.add(new Statistics(strategy, window.mCount, window.mSuccesses,
+                    window.mCount == 0 ? 0 : window.mCostNanos / window.mCount));
+        }
+        return statistics;
+    }
+
+    /**
+     * Outcomes of the last attempts of one pass, oldest overwritten first.
+     */
+    private static final class Window {
+
+        private final boolean[] mOutcomes;
+        private final long[] mCosts;
+        private int mNext;
+        private int mCount;
+        private int mSuccesses;
+        private long mCostNanos;
+
+        Window(int size) {
+            mOutcomes = new boolean[size];
+            mCosts = new long[size];
+        }
+
+        void add(boolean success, long costNanos) {
+            if (mCount == mOutcomes.length) {
+                if (mOutcomes[mNext]) {
+                    mSuccesses--;
+                }
+                mCostNanos -= mCosts[mNext];
+            } else {
+                mCount++;
+            }
+            mOutcomes[mNext] = success;
+            mCosts[mNext] = costNanos;
+            if (success) {
+                mSuccesses++;
+            }
+            mCostNanos += costNanos;
+            mNext = (mNext + 1) % mOutcomes.length;
+        }
+
+        /**
+         * Smoothed success rate per millisecond of average cost.
+         */
+        double score() {
+            double successRate = (mSuccesses + 1.0) / (mCount + 2.0);
+            double averageCostMillis = mCount == 0 ? 1.0 : mCostNanos / 1e6 / mCount;
+            return successRate / Math.max(averageCostMillis, 0.1);
+        }
+    }
+
+    /**
+     * Statistics of one pass over the current window.
+     */
+    public static final class Statistics {
+
+        private final DecodeStrategy mStrategy;
+        private final int mAttempts;
+        private final int mSuccesses;
+        private final long mAverageCostNanos;
+
+        Statistics(DecodeStrategy strategy, int attempts, int successes, long averageCostNanos) {
+            this.mStrategy = strategy;
+            this.mAttempts = attempts;
+            this.mSuccesses = successes;
+            this.mAverageCostNanos = averageCostNanos;
+        }
+
+        public DecodeStrategy getStrategy() {
+            return mStrategy;
+        }
+
+        public int getAttempts() {
+            return mAttempts;
+        }
+
+        public int getSuccesses() {
+            return mSuccesses;
+        }
+
+        public float getSuccessRate() {
+            return mAttempts == 0 ? 0 : (float) mSuccesses / mAttempts;
+        }
+
+        public long getAverageCostNanos() {
+            return mAverageCostNanos;
+        }
+
+        @Override
+        public String toString() {
+            return mStrategy + ": " + mSuccesses + "/" + mAttempts + " succeeded, "
+                    + mAverageCostNanos / 1000 + " us on average";
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.Result;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the codes found recently, keyed by format and text, so that a code held in view
+ * during continuous scanning is reported once rather than on every frame.
+ *
+ * A code counts as a duplicate while it was last seen less than the TTL ago; every sighting,
+ * reported or not, starts the TTL again, so the code is reported anew only after it has been out
+ * of view for that long. At most {@code capacity} codes are remembered, the least recently seen
+ * one is forgotten first.
+ *
+ * One instance may be shared by several decoding threads.
+ */
+public final class DuplicateResultFilter {
+
+    public static final long DEFAULT_TTL_MILLIS = 3000L;
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final long mTtlNanos;
+    private final LinkedHashMap<String, Long> mLastSeen;
+
+    public DuplicateResultFilter() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param ttlMillis How long after it was last seen a code is reported again.
+     * @param capacity  How many codes are remembered at most.
+     */
+    public DuplicateResultFilter(long ttlMillis, final int capacity) {
+        this.mTtlNanos = ttlMillis * 1000000L;
+        final int maxSize = Math.max(1, capacity);
+        mLastSeen = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Records a sighting of the result.
+     *
+     * @return {@code true} if it was seen within the TTL and should be dropped.
+     */
+    public boolean isDuplicate(Result result) {
+        return isDuplicate(result, System.nanoTime());
+    }
+
+    private synchronized boolean isDuplicate(Result result, long nowNanos) {
+        String key = result.getBarcodeFormat() + ":" + result.getText();
+        Long lastSeen = mLastSeen.put(key, nowNanos);
+        return lastSeen != null && nowNanos - lastSeen < mTtlNanos;
+    }
+
+    /**
+     * Drops the results seen within the TTL, recording a sighting of each.
+     *
+     * @return The results not seen within the TTL, in their order; the same array if there were
+     * no duplicates.
+     */
+    public Result[] filter(Result[] results) {
+        long now = System.nanoTime();
+        boolean[] duplicates = new boolean[results.length];
+        int count = 0;
+        for (int i = 0; i < results.length; i++) {
+            duplicates[i] = isDuplicate(results[i], now);
+            if (!duplicates[i]) {
+                count++;
+            }
+        }
+        if (count == results.length) {
+            return results;
+        }
+        Result[] filtered = new Result[count];
+        for (int i = 0, j = 0; i < results.length; i++) {
+            if (!duplicates[i]) {
+                filtered[j++] = results[i];
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Forgets every code seen so far.
+     */
+    public synchronized void clear() {
+        mLastSeen.clear();
+    }
+}
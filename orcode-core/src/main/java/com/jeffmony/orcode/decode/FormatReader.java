@@ -0,0 +1,131 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * A {@link Reader} that picks, once, the cheapest reader able to decode the formats in the
+ * {@link DecodeHintType#POSSIBLE_FORMATS} hint, instead of going through
+ * {@link MultiFormatReader} for every image.
+ *
+ * A single 2D format is decoded by its own reader, and any set of 1D formats by a
+ * {@link MultiFormatOneDReader}, which only holds the readers of those formats. Other
+ * combinations, or no formats hint at all, fall back to a {@link MultiFormatReader} set up with the
+ * hints once, as {@link MultiFormatReader#decodeWithState(BinaryBitmap)} expects.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class FormatReader implements Reader {
+
+    private static final EnumSet<BarcodeFormat> ONE_D_FORMATS = EnumSet.of(
+            BarcodeFormat.UPC_A, BarcodeFormat.UPC_E, BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+            BarcodeFormat.CODABAR, BarcodeFormat.CODE_39, BarcodeFormat.CODE_93,
+            BarcodeFormat.CODE_128, BarcodeFormat.ITF, BarcodeFormat.RSS_14,
+            BarcodeFormat.RSS_EXPANDED);
+
+    private final Map<DecodeHintType, ?> mHints;
+    private final Reader mReader;
+    private final MultiFormatReader mMultiFormatReader;
+
+    /**
+     * @param hints The hints every image is decoded with.
+     */
+    public FormatReader(Map<DecodeHintType, ?> hints) {
+        this.mHints = hints;
+        Reader reader = selectReader(hints);
+        if (reader == null) {
+            mMultiFormatReader = new MultiFormatReader();
+            mMultiFormatReader.setHints(hints);
+            reader = mMultiFormatReader;
+        } else {
+            mMultiFormatReader = null;
+        }
+        mReader = reader;
+    }
+
+    /**
+     * @return The reader for the hinted formats, or {@code null} if only {@link MultiFormatReader}
+     * covers them.
+     */
+    private static Reader selectReader(Map<DecodeHintType, ?> hints) {
+        Object possibleFormats = hints == null ? null : hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        if (!(possibleFormats instanceof Collection) || ((Collection<?>) possibleFormats).isEmpty()) {
+            return null;
+        }
+        Collection<?> formats = (Collection<?>) possibleFormats;
+        if (ONE_D_FORMATS.containsAll(formats)) {
+            return new MultiFormatOneDReader(hints);
+        }
+        if (formats.size() == 1) {
+            Object format = formats.iterator().next();
+            if (format == BarcodeFormat.QR_CODE) {
+                return new QRCodeReader();
+            } else if (format == BarcodeFormat.DATA_MATRIX) {
+                return new DataMatrixReader();
+            } else if (format == BarcodeFormat.AZTEC) {
+                return new AztecReader();
+            } else if (format == BarcodeFormat.PDF_417) {
+                return new PDF417Reader();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The reader actually used.
+     */
+    public Reader getReader() {
+        return mReader;
+    }
+
+    /**
+     * Decodes the image with the hints given at construction.
+     */
+    @Override
+    public Result decode(BinaryBitmap image) throws NotFoundException, ChecksumException, FormatException {
+        if (mMultiFormatReader != null) {
+            return mMultiFormatReader.decodeWithState(image);
+        }
+        return mReader.decode(image, mHints);
+    }
+
+    /**
+     * Decodes the image with other hints, unless they are the ones given at construction.
+     */
+    @Override
+    public Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws NotFoundException, ChecksumException, FormatException {
+        if (hints == mHints) {
+            return decode(image);
+        }
+        if (mMultiFormatReader != null) {
+            try {
+                return mMultiFormatReader.decode(image, hints);
+            } finally {
+                // decode(image, hints) keeps the hints it was given.
+                mMultiFormatReader.setHints(mHints);
+            }
+        }
+        return mReader.decode(image, hints);
+    }
+
+    @Override
+    public void reset() {
+        mReader.reset();
+    }
+}
@@ -0,0 +1,567 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes one camera frame the way the scanner does: the frame first goes through the
+ * {@link FrameQualityGate}, then the region the {@link RegionTracker} expects the code in, then a
+ * {@link LuminancePyramid} level, and finally the {@link DecodeStrategy} passes, one after the
+ * other or raced on a {@link ParallelStrategyDecoder}. Results found once the frame is cancelled,
+ * and those the {@link DuplicateResultFilter} has seen recently, are dropped.
+ *
+ * Every stage is optional and off by default, so that with nothing set this only runs the passes,
+ * as {@link CodeDecoder} does. The settings may be changed between frames.
+ *
+ * Not thread safe; use one instance per decoding thread.
+ */
+public final class FrameDecoder {
+
+    private static final int MAX_CANDIDATES = 16;
+
+    /**
+     * In pyramid mode, frames in a row decoded only downsampled before one goes to full resolution
+     * anyway.
+     */
+    private static final int MAX_DOWNSAMPLED_ONLY_FRAMES = 4;
+
+    /**
+     * Binarizers tried in multi-barcode mode, in this order; rotated codes are not looked for.
+     */
+    private static final DecodeStrategy[] MULTI_DECODE_STRATEGIES = {
+            DecodeStrategy.HYBRID, DecodeStrategy.HYBRID_INVERTED, DecodeStrategy.GLOBAL_HISTOGRAM};
+
+    /**
+     * The pass run on the decoding thread before the others are raced.
+     */
+    private static final Set<DecodeStrategy> FIRST_PASS = Collections.unmodifiableSet(EnumSet.of(DecodeStrategy.HYBRID));
+
+    private static final Result[] NO_RESULTS = new Result[0];
+
+    /**
+     * A frame to decode.
+     */
+    public interface Frame {
+        /**
+         * @return The source every pass but the rotated one binarizes, or {@code null} if the
+         * frame has nothing to decode.
+         */
+        LuminanceSource getSource();
+
+        /**
+         * Only called when the {@link DecodeStrategy#ROTATED} pass runs.
+         *
+         * @return The same crop turned 90 degrees, or {@code null} if it cannot be rotated.
+         */
+        LuminanceSource getRotatedSource();
+    }
+
+    /**
+     * What decoding a frame came to.
+     */
+    public static final class Outcome {
+
+        private final Result[] mResults;
+        private final LuminanceSource mSource;
+        private final boolean mSharp;
+
+        Outcome(Result[] results, LuminanceSource source, boolean sharp) {
+            this.mResults = results;
+            this.mSource = source;
+            this.mSharp = sharp;
+        }
+
+        /**
+         * @return The first result, or {@code null} if none was found.
+         */
+        public Result getResult() {
+            return mResults.length > 0 ? mResults[0] : null;
+        }
+
+        /**
+         * @return Every result found; more than one only in multi-barcode mode.
+         */
+        public Result[] getResults() {
+            return mResults;
+        }
+
+        /**
+         * @return The source the results were found in, which is the rotated one after a
+         * {@link DecodeStrategy#ROTATED} hit; otherwise the frame's source.
+         */
+        public LuminanceSource getSource() {
+            return mSource;
+        }
+
+        /**
+         * @return {@code false} only if the {@link FrameQualityGate} turned the frame down.
+         */
+        public boolean isSharp() {
+            return mSharp;
+        }
+    }
+
+    private final Reader mReader;
+    private final Map<DecodeHintType, ?> mHints;
+    private final Set<DecodeStrategy> mStrategies = EnumSet.allOf(DecodeStrategy.class);
+    private DecodeStrategyScheduler mScheduler;
+    private FrameQualityGate mQualityGate;
+    private RegionTracker mRegionTracker;
+    private LuminancePyramid mPyramid;
+    private int mDownsampledOnlyFrames;
+    private boolean mMultiDecode;
+    private MultiBarcodeDecoder mMultiBarcodeDecoder;
+    private DuplicateResultFilter mDuplicateResultFilter;
+    private Executor mParallelExecutor;
+    private ParallelStrategyDecoder mParallelDecoder;
+
+    /**
+     * The frame being decoded, for {@link #mRunner}.
+     */
+    private Frame mFrame;
+    private LuminanceSource mFrameSource;
+    private LuminanceSource mResultSource;
+    private CodeDecoder.Cancellation mCancellation;
+
+    /**
+     * Region tracking and pyramid decoding: how the points reported while decoding a region or a
+     * downsampled level map back to the source, and the finder pattern candidates seen so far in
+     * the current frame, in source coordinates.
+     */
+    private volatile Thread mDecodeThread;
+    private int mRegionLeft;
+    private int mRegionTop;
+    private int mPointScale = 1;
+    private int mPointsSeen;
+    private final ResultPoint[] mCandidates = new ResultPoint[MAX_CANDIDATES];
+    private int mCandidateCount;
+    private boolean mTrackCandidates = true;
+
+    private final DecodeStrategyScheduler.StrategyRunner mRunner = new DecodeStrategyScheduler.StrategyRunner() {
+        @Override
+        public Result run(DecodeStrategy strategy) throws Exception {
+            LuminanceSource source = mFrameSource;
+            if (strategy == DecodeStrategy.ROTATED) {
+                source = mFrame.getRotatedSource();
+                if (source == null) {
+                    return null;
+                }
+            }
+            // Candidates found in the rotated source are in other coordinates.
+            mTrackCandidates = strategy != DecodeStrategy.ROTATED;
+            try {
+                Result result = mReader.decode(strategy.binarize(source), mHints);
+                mResultSource = source;
+                return result;
+            } finally {
+                mTrackCandidates = true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return FrameDecoder.this.isCancelled();
+        }
+    };
+
+    /**
+     * Decodes with a {@link FormatReader} for the hinted formats.
+     */
+    public FrameDecoder(Map<DecodeHintType, ?> hints) {
+        this(null, hints);
+    }
+
+    /**
+     * @param reader The reader every pass run on the decoding thread uses; {@code null} for a
+     *               {@link FormatReader} for the hinted formats.
+     * @param hints  The hints every pass decodes with. A
+     *               {@link DecodeHintType#NEED_RESULT_POINT_CALLBACK} among them still gets every
+     *               point, moved back into the coordinates of the whole frame.
+     */
+    public FrameDecoder(Reader reader, Map<DecodeHintType, ?> hints) {
+        Object resultPointCallback = hints == null ? null : hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+        if (resultPointCallback instanceof ResultPointCallback) {
+            Map<DecodeHintType, Object> trackingHints = new EnumMap<>(DecodeHintType.class);
+            trackingHints.putAll(hints);
+            trackingHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
+                    new TrackingResultPointCallback((ResultPointCallback) resultPointCallback));
+            hints = trackingHints;
+        }
+        this.mHints = hints;
+        this.mReader = reader != null ? reader : new FormatReader(hints);
+    }
+
+    /**
+     * @param strategies The passes to try; all of them by default.
+     */
+    public FrameDecoder setStrategies(Collection<DecodeStrategy> strategies) {
+        mStrategies.clear();
+        mStrategies.addAll(strategies);
+        return this;
+    }
+
+    /**
+     * @param scheduler Orders the passes by their recent success rate and cost; {@code null} to
+     *                  try them in their declared order.
+     */
+    public FrameDecoder setScheduler(DecodeStrategyScheduler scheduler) {
+        if (scheduler != mScheduler) {
+            mScheduler = scheduler;
+            mParallelDecoder = null;
+        }
+        return this;
+    }
+
+    /**
+     * @param qualityGate Turns down blurry frames before any pass runs; {@code null} to decode
+     *                    every frame.
+     */
+    public FrameDecoder setQualityGate(FrameQualityGate qualityGate) {
+        mQualityGate = qualityGate;
+        return this;
+    }
+
+    /**
+     * @param regionTracker Where the code was last seen, tried first on its own; {@code null} to
+     *                      always decode the whole frame.
+     */
+    public FrameDecoder setRegionTracker(RegionTracker regionTracker) {
+        mRegionTracker = regionTracker;
+        return this;
+    }
+
+    /**
+     * @param pyramid Tries a downsampled level before the full resolution passes, which only run
+     *                once finder patterns were seen; {@code null} to go to full resolution
+     *                straight away.
+     */
+    public FrameDecoder setPyramid(LuminancePyramid pyramid) {
+        mPyramid = pyramid;
+        return this;
+    }
+
+    /**
+     * @param multiDecode Finds every code in the frame instead of the first one, without the
+     *                    region, pyramid and rotated passes.
+     */
+    public FrameDecoder setMultiDecode(boolean multiDecode) {
+        mMultiDecode = multiDecode;
+        return this;
+    }
+
+    /**
+     * @param duplicateResultFilter Drops the codes reported recently; {@code null} to keep them.
+     */
+    public FrameDecoder setDuplicateResultFilter(DuplicateResultFilter duplicateResultFilter) {
+        mDuplicateResultFilter = duplicateResultFilter;
+        return this;
+    }
+
+    /**
+     * @param executor Races the passes other than {@link DecodeStrategy#HYBRID} against each
+     *                 other once it failed; {@code null} to run them one after the other.
+     */
+    public FrameDecoder setParallelExecutor(Executor executor) {
+        if (executor != mParallelExecutor) {
+            mParallelExecutor = executor;
+            mParallelDecoder = null;
+        }
+        return this;
+    }
+
+    /**
+     * @param cancellation Checked before each pass; once cancelled nothing more is tried and any
+     *                     result already found is dropped. {@code null} to never cancel.
+     */
+    public Outcome decode(Frame frame, CodeDecoder.Cancellation cancellation) {
+        LuminanceSource source = frame.getSource();
+        if (source == null) {
+            return new Outcome(NO_RESULTS, null, true);
+        }
+        if (mQualityGate != null && !mQualityGate.accept(source)) {
+            // Not worth binarizing, report it as a failed decode.
+            return new Outcome(NO_RESULTS, source, false);
+        }
+        mFrame = frame;
+        mFrameSource = source;
+        mCancellation = cancellation;
+        mDecodeThread = Thread.currentThread();
+        mCandidateCount = 0;
+        try {
+            Result[] results;
+            if (mMultiDecode) {
+                results = decodeMultiple(source);
+                if (results.length > 0 && !isCancelled() && mDuplicateResultFilter != null) {
+                    // Codes reported recently are dropped here, before they cost a beep or a callback.
+                    results = mDuplicateResultFilter.filter(results);
+                }
+            } else {
+                Result result = decodeSingle(source);
+                if (result != null && !isCancelled() && mDuplicateResultFilter != null
+                        && mDuplicateResultFilter.isDuplicate(result)) {
+                    // Reported recently, keep scanning as if nothing was found.
+                    result = null;
+                }
+                results = result != null ? new Result[]{result} : NO_RESULTS;
+            }
+            if (results.length > 0 && isCancelled()) {
+                // Another worker already won, or decoding was restarted while this frame was in flight.
+                results = NO_RESULTS;
+            }
+            return new Outcome(results, results.length > 0 ? mResultSource : source, true);
+        } finally {
+            mFrame = null;
+            mFrameSource = null;
+            mResultSource = null;
+            mCancellation = null;
+            mDecodeThread = null;
+            mReader.reset();
+        }
+    }
+
+    private boolean isCancelled() {
+        return mCancellation != null && mCancellation.isCancelled();
+    }
+
+    private Result decodeSingle(LuminanceSource source) {
+        Result result = null;
+        if (mRegionTracker != null) {
+            result = decodeRegion(source, mRegionTracker.predict(source.getWidth(), source.getHeight()));
+        }
+        boolean fullResolution = true;
+        if (result == null && mPyramid != null && !isCancelled()) {
+            int factor = mPyramid.getFactor(source.getWidth(), source.getHeight());
+            if (factor > 1) {
+                int pointsSeen = mPointsSeen;
+                result = decodeDownsampled(source, factor);
+                // Go on at full resolution only if finder patterns were seen, or once in a while
+                // for the codes whose readers report none.
+                fullResolution = result == null && (mPointsSeen > pointsSeen
+                        || ++mDownsampledOnlyFrames >= MAX_DOWNSAMPLED_ONLY_FRAMES);
+                if (fullResolution) {
+                    mDownsampledOnlyFrames = 0;
+                }
+            }
+        }
+        if (result == null && fullResolution && !isCancelled()) {
+            if (mParallelExecutor != null) {
+                result = decodeInParallel(source);
+            } else {
+                result = runPasses(mStrategies);
+            }
+        }
+        if (mRegionTracker != null) {
+            if (result == null) {
+                mRegionTracker.updateCandidates(mCandidates, mCandidateCount);
+            } else if (mResultSource == source) {
+                // A rotated hit says nothing about where the code is in this source.
+                mRegionTracker.update(result.getResultPoints());
+            }
+        }
+        return result;
+    }
+
+    private Result runPasses(Set<DecodeStrategy> strategies) {
+        if (mScheduler != null) {
+            return mScheduler.decode(strategies, mRunner);
+        }
+        return DecodeStrategyScheduler.decodeInOrder(strategies, mRunner);
+    }
+
+    /**
+     * Runs the plain {@link DecodeStrategy#HYBRID} pass here, and if it fails races the other
+     * enabled passes against each other on the parallel executor.
+     */
+    private Result decodeInParallel(LuminanceSource source) {
+        Result result = mStrategies.contains(DecodeStrategy.HYBRID) ? runPasses(FIRST_PASS) : null;
+        if (result != null || isCancelled()) {
+            return result;
+        }
+        Map<DecodeStrategy, LuminanceSource> sources = ParallelStrategyDecoder.newSourceMap();
+        for (DecodeStrategy strategy : mStrategies) {
+            if (strategy == DecodeStrategy.HYBRID) {
+                continue;
+            }
+            if (strategy == DecodeStrategy.ROTATED) {
+                LuminanceSource rotatedSource = mFrame.getRotatedSource();
+                if (rotatedSource != null) {
+                    sources.put(strategy, rotatedSource);
+                }
+            } else {
+                sources.put(strategy, source);
+            }
+        }
+        if (sources.isEmpty()) {
+            return null;
+        }
+        if (sources.size() == 1) {
+            // Nothing to race against.
+            return runPasses(sources.keySet());
+        }
+        if (mParallelDecoder == null) {
+            mParallelDecoder = new ParallelStrategyDecoder(mParallelExecutor, mHints, mScheduler);
+        }
+        Map.Entry<DecodeStrategy, Result> winner = mParallelDecoder.decode(sources);
+        if (winner == null) {
+            return null;
+        }
+        mResultSource = sources.get(winner.getKey());
+        return winner.getValue();
+    }
+
+    /**
+     * Finds every code in the source, trying the binarizers one after the other until one of them
+     * finds any.
+     */
+    private Result[] decodeMultiple(LuminanceSource source) {
+        if (mMultiBarcodeDecoder == null) {
+            mMultiBarcodeDecoder = new MultiBarcodeDecoder(mHints);
+        }
+        Result[] results = NO_RESULTS;
+        for (DecodeStrategy strategy : MULTI_DECODE_STRATEGIES) {
+            if (isCancelled()) {
+                break;
+            }
+            if (!mStrategies.contains(strategy)) {
+                continue;
+            }
+            results = mMultiBarcodeDecoder.decode(strategy.binarize(source));
+            if (results.length > 0) {
+                mResultSource = source;
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Decodes only the region the code is expected in, with the plain
+     * {@link DecodeStrategy#HYBRID} pass.
+     *
+     * @return The result, with its points in the coordinates of the whole source.
+     */
+    private Result decodeRegion(LuminanceSource source, RegionTracker.Region region) {
+        if (region == null) {
+            return null;
+        }
+        mRegionLeft = region.getLeft();
+        mRegionTop = region.getTop();
+        try {
+            LuminanceSource regionSource = source.crop(region.getLeft(), region.getTop(), region.getWidth(), region.getHeight());
+            Result result = mReader.decode(DecodeStrategy.HYBRID.binarize(regionSource), mHints);
+            mResultSource = source;
+            return transform(result, 1, region.getLeft(), region.getTop());
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            mReader.reset();
+            mRegionLeft = 0;
+            mRegionTop = 0;
+        }
+    }
+
+    /**
+     * Decodes the source downsampled by the given factor, with the plain
+     * {@link DecodeStrategy#HYBRID} pass.
+     *
+     * @return The result, with its points in the coordinates of the full resolution source.
+     */
+    private Result decodeDownsampled(LuminanceSource source, int factor) {
+        mPointScale = factor;
+        try {
+            LuminanceSource level = mPyramid.downsample(source, factor);
+            Result result = mReader.decode(DecodeStrategy.HYBRID.binarize(level), mHints);
+            mResultSource = source;
+            return transform(result, factor, 0, 0);
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            mReader.reset();
+            mPointScale = 1;
+        }
+    }
+
+    /**
+     * @return The result with each point scaled and then moved by the given offset.
+     */
+    static Result transform(Result result, int scale, int dx, int dy) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return result;
+        }
+        ResultPoint[] translated = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] != null) {
+                translated[i] = new ResultPoint(points[i].getX() * scale + dx, points[i].getY() * scale + dy);
+            }
+        }
+        return withPoints(result, translated);
+    }
+
+    /**
+     * @param height The height of the crop before it was turned.
+     * @return The result of a {@link DecodeStrategy#ROTATED} hit, whose points are in the crop
+     * turned 90 degrees clockwise, with its points back in the crop.
+     */
+    static Result unrotate(Result result, int height) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return result;
+        }
+        ResultPoint[] unrotated = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] != null) {
+                unrotated[i] = new ResultPoint(points[i].getY(), height - 1 - points[i].getX());
+            }
+        }
+        return withPoints(result, unrotated);
+    }
+
+    private static Result withPoints(Result result, ResultPoint[] points) {
+        Result moved = new Result(result.getText(), result.getRawBytes(), result.getNumBits(),
+                points, result.getBarcodeFormat(), result.getTimestamp());
+        moved.putAllMetadata(result.getResultMetadata());
+        return moved;
+    }
+
+    /**
+     * Moves the candidates found while decoding a region back into source coordinates, and keeps
+     * those found on the decoding thread for the {@link RegionTracker}.
+     */
+    private final class TrackingResultPointCallback implements ResultPointCallback {
+
+        private final ResultPointCallback mCallback;
+
+        TrackingResultPointCallback(ResultPointCallback callback) {
+            this.mCallback = callback;
+        }
+
+        @Override
+        public void foundPossibleResultPoint(ResultPoint point) {
+            // Parallel passes report from other threads, on sources that are never cropped.
+            if (Thread.currentThread() == mDecodeThread) {
+                mPointsSeen++;
+                if (mPointScale != 1 || mRegionLeft != 0 || mRegionTop != 0) {
+                    point = new ResultPoint(point.getX() * mPointScale + mRegionLeft, point.getY() * mPointScale + mRegionTop);
+                }
+                if (mTrackCandidates && mCandidateCount < mCandidates.length) {
+                    mCandidates[mCandidateCount++] = point;
+                }
+            }
+            mCallback.foundPossibleResultPoint(point);
+        }
+    }
+}
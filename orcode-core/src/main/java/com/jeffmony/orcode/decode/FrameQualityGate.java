@@ -0,0 +1,129 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * A cheap check run on a frame before it is binarized, telling sharp frames from those blurred by
+ * a focus sweep or a moving hand.
+ *
+ * The score is the gradient energy of a sparse grid of pixels divided by their variance, so it
+ * measures how steep the edges are rather than how much contrast the scene has. What counts as
+ * sharp depends on the scene, so a frame is accepted when it scores at least
+ * {@link #DEFAULT_ACCEPT_RATIO} of the best recent score; that peak slowly decays so a new scene
+ * is learned within a few frames. After {@link #DEFAULT_MAX_REJECTIONS} frames rejected in a row the
+ * next one is accepted regardless, so a scene that never gets sharp is still decoded.
+ *
+ * One instance may be shared by several decoding threads.
+ */
+public final class FrameQualityGate {
+
+    public static final float DEFAULT_ACCEPT_RATIO = 0.5f;
+    public static final int DEFAULT_MAX_REJECTIONS = 4;
+
+    /**
+     * Samples taken along each side of the source, at most.
+     */
+    private static final int GRID_SIZE = 48;
+    /**
+     * Keeps the score finite on flat frames; in squared luminance steps.
+     */
+    private static final float VARIANCE_FLOOR = 16f;
+    /**
+     * How much of the peak is kept from one frame to the next.
+     */
+    private static final float PEAK_DECAY = 0.95f;
+
+    private final float mAcceptRatio;
+    private final int mMaxRejections;
+    private float mPeakScore;
+    private int mRejections;
+
+    public FrameQualityGate() {
+        this(DEFAULT_ACCEPT_RATIO, DEFAULT_MAX_REJECTIONS);
+    }
+
+    /**
+     * @param acceptRatio   The fraction of the recent peak score a frame must reach.
+     * @param maxRejections How many frames in a row may be rejected.
+     */
+    public FrameQualityGate(float acceptRatio, int maxRejections) {
+        this.mAcceptRatio = acceptRatio;
+        this.mMaxRejections = Math.max(0, maxRejections);
+    }
+
+    /**
+     * @return The sharpness of the source, higher is sharper; {@code 0} if it is too small to tell.
+     */
+    public static float score(LuminanceSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width < 2 || height < 2) {
+            return 0;
+        }
+        // Odd steps, so the grid does not line up with the edges of evenly sized modules.
+        int stepX = Math.max(1, width / GRID_SIZE) | 1;
+        int stepY = Math.max(1, height / GRID_SIZE) | 1;
+        byte[] row = new byte[width];
+        byte[] nextRow = new byte[width];
+        long sum = 0;
+        long sumOfSquares = 0;
+        long gradientEnergy = 0;
+        int count = 0;
+        // Gradients are taken between neighbouring pixels: blur removes exactly those differences,
+        // while the sparse grid keeps the cost to a few thousand pixels whatever the preview size.
+        for (int y = 0; y < height - 1; y += stepY) {
+            row = source.getRow(y, row);
+            nextRow = source.getRow(y + 1, nextRow);
+            for (int x = 0; x < width - 1; x += stepX) {
+                int pixel = row[x] & 0xff;
+                int dx = (row[x + 1] & 0xff) - pixel;
+                int dy = (nextRow[x] & 0xff) - pixel;
+                sum += pixel;
+                sumOfSquares += pixel * pixel;
+                gradientEnergy += dx * dx + dy * dy;
+                count++;
+            }
+        }
+        float mean = (float) sum / count;
+        float variance = (float) sumOfSquares / count - mean * mean;
+        return (float) gradientEnergy / count / (Math.max(variance, 0) + VARIANCE_FLOOR);
+    }
+
+    /**
+     * Scores the source and decides whether it is worth decoding.
+     *
+     * @return {@code true} if the frame should be decoded.
+     */
+    public boolean accept(LuminanceSource source) {
+        return accept(score(source));
+    }
+
+    /**
+     * @param score A score from {@link #score(LuminanceSource)}.
+     * @return {@code true} if the frame should be decoded.
+     */
+    public synchronized boolean accept(float score) {
+        mPeakScore = Math.max(score, mPeakScore * PEAK_DECAY);
+        if (score >= mPeakScore * mAcceptRatio || mRejections >= mMaxRejections) {
+            mRejections = 0;
+            return true;
+        }
+        mRejections++;
+        return false;
+    }
+
+    /**
+     * @return How many frames in a row have been rejected so far.
+     */
+    public synchronized int getRejections() {
+        return mRejections;
+    }
+
+    /**
+     * Forgets the learned peak, e.g. after the camera was restarted.
+     */
+    public synchronized void reset() {
+        mPeakScore = 0;
+        mRejections = 0;
+    }
+}
@@ -0,0 +1,96 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import java.util.Arrays;
+
+/**
+ * Builds 2x or 4x downsampled copies of large luminance sources, so that big codes close to the
+ * camera can be found without binarizing every pixel of a high resolution preview frame.
+ *
+ * Each output pixel is the average of the block of source pixels it covers, which keeps edges
+ * clean where plain subsampling would alias. The arrays involved are kept and reused by the next
+ * frame of the same size, so a level must not be used any more once the next one is built.
+ *
+ * Not thread safe; use one instance per decoding thread.
+ */
+public final class LuminancePyramid {
+
+    public static final int DEFAULT_MIN_SIDE = 480;
+
+    private static final int MAX_FACTOR = 4;
+
+    private final int mMinSide;
+    private byte[] mRow;
+    private int[] mSums;
+    private byte[] mLevel;
+
+    public LuminancePyramid() {
+        this(DEFAULT_MIN_SIDE);
+    }
+
+    /**
+     * @param minSide The shorter side of a downsampled level is never below this.
+     */
+    public LuminancePyramid(int minSide) {
+        this.mMinSide = Math.max(1, minSide);
+    }
+
+    /**
+     * @return The largest factor, 1, 2 or 4, that keeps the shorter side of the source at or above
+     * the minimum; 1 means the source is not worth downsampling.
+     */
+    public int getFactor(int width, int height) {
+        int shortSide = Math.min(width, height);
+        int factor = 1;
+        while (factor < MAX_FACTOR && shortSide / (factor * 2) >= mMinSide) {
+            factor *= 2;
+        }
+        return factor;
+    }
+
+    /**
+     * @param source The full resolution source.
+     * @param factor 2 or 4, from {@link #getFactor(int, int)}.
+     * @return A source {@code factor} times smaller on each side, backed by the reused array.
+     */
+    public LuminanceSource downsample(LuminanceSource source, int factor) {
+        int width = source.getWidth() / factor;
+        int height = source.getHeight() / factor;
+        int sourceWidth = source.getWidth();
+        if (mRow == null || mRow.length < sourceWidth) {
+            mRow = new byte[sourceWidth];
+        }
+        if (mSums == null || mSums.length < width) {
+            mSums = new int[width];
+        }
+        // Exactly sized, since PlanarYUVLuminanceSource hands out the whole array as its matrix.
+        if (mLevel == null || mLevel.length != width * height) {
+            mLevel = new byte[width * height];
+        }
+        byte[] row = mRow;
+        int[] sums = mSums;
+        byte[] level = mLevel;
+        int shift = Integer.numberOfTrailingZeros(factor * factor);
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sums, 0, width, 0);
+            for (int k = 0; k < factor; k++) {
+                row = source.getRow(y * factor + k, row);
+                for (int x = 0, offset = 0; x < width; x++) {
+                    int sum = 0;
+                    for (int end = offset + factor; offset < end; offset++) {
+                        sum += row[offset] & 0xff;
+                    }
+                    sums[x] += sum;
+                }
+            }
+            int outputOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                level[outputOffset + x] = (byte) (sums[x] >> shift);
+            }
+        }
+        mRow = row;
+        return new PlanarYUVLuminanceSource(level, width, height, 0, 0, width, height, false);
+    }
+}
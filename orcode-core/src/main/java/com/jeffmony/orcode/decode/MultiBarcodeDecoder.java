@@ -0,0 +1,130 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds every code in an image rather than the first one, e.g. the QR code, Code 128 and EAN on
+ * a single label.
+ *
+ * {@link QRCodeMultiReader} finds several QR codes side by side, and
+ * {@link GenericMultipleBarcodeReader} finds codes of any of the hinted formats by decoding
+ * again around each one found. Both may report the same code, and the latter may report it
+ * several times, so results of the same format and text whose centers are closer than half their
+ * size are merged.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class MultiBarcodeDecoder {
+
+    private static final Result[] NO_RESULTS = new Result[0];
+
+    private final Map<DecodeHintType, ?> mHints;
+    private final GenericMultipleBarcodeReader mGenericReader;
+    private final QRCodeMultiReader mQRCodeReader;
+
+    /**
+     * @param hints The hints every reader is set up with; {@link DecodeHintType#POSSIBLE_FORMATS}
+     *              decides whether QR codes are looked for separately.
+     */
+    public MultiBarcodeDecoder(Map<DecodeHintType, ?> hints) {
+        this.mHints = hints;
+        mGenericReader = new GenericMultipleBarcodeReader(new FormatReader(hints));
+        mQRCodeReader = isQRCodePossible(hints) ? new QRCodeMultiReader() : null;
+    }
+
+    /**
+     * @return Every distinct code found, empty if none.
+     */
+    public Result[] decode(BinaryBitmap bitmap) {
+        List<Result> results = new ArrayList<>();
+        if (mQRCodeReader != null) {
+            try {
+                addDistinct(results, mQRCodeReader.decodeMultiple(bitmap, mHints));
+            } catch (ReaderException e) {
+                // continue
+            }
+        }
+        try {
+            addDistinct(results, mGenericReader.decodeMultiple(bitmap, mHints));
+        } catch (ReaderException e) {
+            // continue
+        }
+        return results.isEmpty() ? NO_RESULTS : results.toArray(new Result[results.size()]);
+    }
+
+    private static boolean isQRCodePossible(Map<DecodeHintType, ?> hints) {
+        Object formats = hints == null ? null : hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        return !(formats instanceof Collection) || ((Collection<?>) formats).contains(BarcodeFormat.QR_CODE);
+    }
+
+    private static void addDistinct(List<Result> results, Result[] found) {
+        for (Result result : found) {
+            if (!containsSameCode(results, result)) {
+                results.add(result);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if one of the results is the same code at the same position.
+     */
+    private static boolean containsSameCode(List<Result> results, Result result) {
+        float[] bounds = bounds(result);
+        for (Result other : results) {
+            if (other.getBarcodeFormat() != result.getBarcodeFormat()
+                    || !other.getText().equals(result.getText())) {
+                continue;
+            }
+            float[] otherBounds = bounds(other);
+            if (bounds == null || otherBounds == null) {
+                // Nothing to tell them apart by.
+                return true;
+            }
+            float dx = (bounds[0] + bounds[2]) / 2 - (otherBounds[0] + otherBounds[2]) / 2;
+            float dy = (bounds[1] + bounds[3]) / 2 - (otherBounds[1] + otherBounds[3]) / 2;
+            float size = Math.max(Math.max(bounds[2] - bounds[0], bounds[3] - bounds[1]),
+                    Math.max(otherBounds[2] - otherBounds[0], otherBounds[3] - otherBounds[1]));
+            if (dx * dx + dy * dy <= size * size / 4) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {minX, minY, maxX, maxY} of the result points, or {@code null} if there are none.
+     */
+    private static float[] bounds(Result result) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return null;
+        }
+        float[] bounds = null;
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            if (bounds == null) {
+                bounds = new float[]{point.getX(), point.getY(), point.getX(), point.getY()};
+            } else {
+                bounds[0] = Math.min(bounds[0], point.getX());
+                bounds[1] = Math.min(bounds[1], point.getY());
+                bounds[2] = Math.max(bounds[2], point.getX());
+                bounds[3] = Math.max(bounds[3], point.getY());
+            }
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,165 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs several {@link DecodeStrategy} passes on the same frame at the same time, each on its own
+ * {@link FormatReader}, and returns as soon as one of them succeeds.
+ *
+ * Passes that have not started yet when a result is found are cancelled. ZXing readers do not
+ * check for interruption, so passes already running finish in the background and their results
+ * are dropped; their readers go back to the pool only then, so a reader is never used by two
+ * passes at once.
+ *
+ * Because such passes outlive {@link #decode(Map)}, they never see the sources passed in: each
+ * distinct source is first copied into a luminance array of its own, so the caller is free to
+ * recycle the frame buffer or any scratch array behind its sources as soon as the call returns.
+ * Passes finishing after the race was decided are not recorded with the scheduler either, as their
+ * outcome no longer says anything about the frame.
+ */
+public final class ParallelStrategyDecoder {
+
+    private final Executor mExecutor;
+    private final Map<DecodeHintType, ?> mHints;
+    private final Queue<FormatReader> mReaders = new ConcurrentLinkedQueue<>();
+    private final DecodeStrategyScheduler mScheduler;
+
+    /**
+     * @param executor  Runs the passes; should have a few threads, one per pass raced.
+     * @param hints     The hints every reader is set up with.
+     * @param scheduler Records the outcome and cost of every pass that ran, may be {@code null}.
+     */
+    public ParallelStrategyDecoder(Executor executor, Map<DecodeHintType, ?> hints, DecodeStrategyScheduler scheduler) {
+        this.mExecutor = executor;
+        this.mHints = hints;
+        this.mScheduler = scheduler;
+    }
+
+    /**
+     * @param sources The source each pass binarizes, keyed by pass; for
+     *                {@link DecodeStrategy#ROTATED} the rotated source. They are copied before
+     *                the passes start and not read again.
+     * @return The first result found along with the pass that found it, or {@code null} if every
+     * pass failed or the calling thread was interrupted.
+     */
+    public Map.Entry<DecodeStrategy, Result> decode(Map<DecodeStrategy, LuminanceSource> sources) {
+        CompletionService<Result> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<Result>> futures = new ArrayList<>(sources.size());
+        List<DecodeStrategy> strategies = new ArrayList<>(sources.size());
+        AtomicBoolean decided = new AtomicBoolean();
+        // Passes racing on the same source share one copy of it; nobody writes to it.
+        Map<LuminanceSource, LuminanceSource> copies = new IdentityHashMap<>();
+        for (Map.Entry<DecodeStrategy, LuminanceSource> entry : sources.entrySet()) {
+            LuminanceSource copy = copies.get(entry.getValue());
+            if (copy == null) {
+                copy = copyOf(entry.getValue());
+                copies.put(entry.getValue(), copy);
+            }
+            futures.add(completionService.submit(new Pass(entry.getKey(), copy, decided)));
+            strategies.add(entry.getKey());
+        }
+        Map.Entry<DecodeStrategy, Result> result = null;
+        try {
+            for (int i = 0; i < futures.size() && result == null; i++) {
+                Future<Result> future = completionService.take();
+                try {
+                    result = new AbstractMap.SimpleImmutableEntry<>(
+                            strategies.get(futures.indexOf(future)), future.get());
+                } catch (ExecutionException e) {
+                    // That pass found nothing, wait for the others.
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            decided.set(true);
+            for (Future<Result> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return A source over a copy of the given one's luminance, independent of whatever array
+     * the original reads from.
+     */
+    private static LuminanceSource copyOf(LuminanceSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        byte[] luminance = new byte[width * height];
+        // Row by row, so the frame is copied once: getMatrix() of a cropped source is already a
+        // copy, and that of a rotated one is a scratch array reused by the next frame.
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            row = source.getRow(y, row);
+            System.arraycopy(row, 0, luminance, y * width, width);
+        }
+        return new PlanarYUVLuminanceSource(luminance, width, height, 0, 0, width, height, false);
+    }
+
+    /**
+     * Convenience to build the map {@link #decode(Map)} takes.
+     */
+    public static Map<DecodeStrategy, LuminanceSource> newSourceMap() {
+        return new EnumMap<>(DecodeStrategy.class);
+    }
+
+    private FormatReader obtainReader() {
+        FormatReader reader = mReaders.poll();
+        if (reader == null) {
+            reader = new FormatReader(mHints);
+        }
+        return reader;
+    }
+
+    private final class Pass implements Callable<Result> {
+
+        private final DecodeStrategy mStrategy;
+        private final LuminanceSource mSource;
+        private final AtomicBoolean mDecided;
+
+        Pass(DecodeStrategy strategy, LuminanceSource source, AtomicBoolean decided) {
+            this.mStrategy = strategy;
+            this.mSource = source;
+            this.mDecided = decided;
+        }
+
+        @Override
+        public Result call() throws Exception {
+            FormatReader reader = obtainReader();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                Result result = reader.decode(mStrategy.binarize(mSource));
+                success = true;
+                return result;
+            } finally {
+                if (mScheduler != null && !mDecided.get()) {
+                    mScheduler.record(mStrategy, success, System.nanoTime() - start);
+                }
+                reader.reset();
+                mReaders.offer(reader);
+            }
+        }
+    }
+}
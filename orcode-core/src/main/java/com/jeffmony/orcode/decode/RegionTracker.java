@@ -0,0 +1,199 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.ResultPoint;
+
+/**
+ * Predicts where a code will be in the next preview frame from where it was found, or from the
+ * finder patterns seen, in the frames before, so that a tight crop around it can be decoded
+ * before the whole framing rect.
+ *
+ * All coordinates are those of the luminance source the points were found in. The region follows
+ * the code at the speed it moved between the last two sightings, and is dropped after
+ * {@link #MAX_MISSES} frames in a row in which the code was found nowhere, or once the last
+ * sighting is {@link #MAX_AGE} frames old.
+ *
+ * One instance may be shared by several decoding threads.
+ */
+public final class RegionTracker {
+
+    private static final int MAX_MISSES = 5;
+    private static final int MAX_AGE = 30;
+    /**
+     * Result points are pattern centers, not the corners of the code: the box around them grows by
+     * this much of its size on every side.
+     */
+    private static final float MARGIN_RATIO = 0.5f;
+    private static final int MIN_REGION_SIZE = 96;
+    /**
+     * Regions covering more of the source than this are not worth a separate pass.
+     */
+    private static final float MAX_AREA_RATIO = 0.5f;
+    /**
+     * Finder pattern candidates needed in one frame before they are trusted as a sighting.
+     */
+    private static final int MIN_CANDIDATES = 3;
+
+    private boolean mTracking;
+    private long mFrame;
+    private long mLastSeenFrame;
+    private float mCenterX;
+    private float mCenterY;
+    private float mVelocityX;
+    private float mVelocityY;
+    private float mSize;
+    private int mMisses;
+
+    /**
+     * Starts a new frame and predicts where the code is in it.
+     *
+     * @param width  The width of the source of the new frame.
+     * @param height The height of the source of the new frame.
+     * @return The region to decode first, or {@code null} if nothing is tracked or the region would
+     * not be much smaller than the source.
+     */
+    public synchronized Region predict(int width, int height) {
+        mFrame++;
+        if (!mTracking) {
+            return null;
+        }
+        long elapsed = mFrame - mLastSeenFrame;
+        if (elapsed > MAX_AGE) {
+            mTracking = false;
+            return null;
+        }
+        float centerX = mCenterX + mVelocityX * elapsed;
+        float centerY = mCenterY + mVelocityY * elapsed;
+        // The faster the code moves, the less certain the prediction.
+        float speed = Math.abs(mVelocityX) + Math.abs(mVelocityY);
+        int size = (int) Math.max(MIN_REGION_SIZE, mSize * (1 + 2 * MARGIN_RATIO) + speed * elapsed);
+        int regionWidth = Math.min(size, width);
+        int regionHeight = Math.min(size, height);
+        if (regionWidth * regionHeight > width * height * MAX_AREA_RATIO) {
+            return null;
+        }
+        int left = clamp((int) (centerX - regionWidth / 2f), 0, width - regionWidth);
+        int top = clamp((int) (centerY - regionHeight / 2f), 0, height - regionHeight);
+        return new Region(left, top, regionWidth, regionHeight);
+    }
+
+    /**
+     * Records that a code was found in the current frame.
+     *
+     * @param points The result points of the code.
+     */
+    public synchronized void update(ResultPoint[] points) {
+        if (points == null || points.length < 2) {
+            return;
+        }
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        int count = 0;
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+            count++;
+        }
+        if (count < 2) {
+            return;
+        }
+        float centerX = (minX + maxX) / 2;
+        float centerY = (minY + maxY) / 2;
+        long elapsed = mFrame - mLastSeenFrame;
+        if (mTracking && elapsed > 0) {
+            mVelocityX = (centerX - mCenterX) / elapsed;
+            mVelocityY = (centerY - mCenterY) / elapsed;
+        } else {
+            mVelocityX = 0;
+            mVelocityY = 0;
+        }
+        mCenterX = centerX;
+        mCenterY = centerY;
+        // 1D barcodes only report points along a line, so size the box by its longer side.
+        mSize = Math.max(maxX - minX, maxY - minY);
+        mLastSeenFrame = mFrame;
+        mMisses = 0;
+        mTracking = true;
+    }
+
+    /**
+     * Records the finder pattern candidates seen in the current frame while no code was found in
+     * it. Enough of them count as a sighting.
+     */
+    public synchronized void updateCandidates(ResultPoint[] candidates, int count) {
+        if (count >= MIN_CANDIDATES) {
+            ResultPoint[] points = new ResultPoint[count];
+            System.arraycopy(candidates, 0, points, 0, count);
+            update(points);
+        } else {
+            miss();
+        }
+    }
+
+    /**
+     * Records that no code was found in the current frame.
+     */
+    public synchronized void miss() {
+        if (mTracking && ++mMisses >= MAX_MISSES) {
+            mTracking = false;
+        }
+    }
+
+    public synchronized boolean isTracking() {
+        return mTracking;
+    }
+
+    public synchronized void reset() {
+        mTracking = false;
+        mMisses = 0;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    /**
+     * A rectangle in source coordinates.
+     */
+    public static final class Region {
+
+        private final int mLeft;
+        private final int mTop;
+        private final int mWidth;
+        private final int mHeight;
+
+        Region(int left, int top, int width, int height) {
+            this.mLeft = left;
+            this.mTop = top;
+            this.mWidth = width;
+            this.mHeight = height;
+        }
+
+        public int getLeft() {
+            return mLeft;
+        }
+
+        public int getTop() {
+            return mTop;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public String toString() {
+            return "Region(" + mLeft + ", " + mTop + " - " + mWidth + "x" + mHeight + ")";
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * A crop of a YUV preview frame rotated 90 degrees clockwise, read straight from the original
+ * Y plane. Unlike rotating the whole frame into a new array and wrapping it in a
+ * {@link com.google.zxing.PlanarYUVLuminanceSource}, only the crop is ever touched: rows are
+ * gathered on demand and {@link #getMatrix()} fills a crop-sized array that can be handed to the
+ * next frame through {@link #getMatrixBuffer()}.
+ *
+ * Coordinates passed in are those of the rotated image, which is {@code dataHeight} wide and
+ * {@code dataWidth} high.
+ */
+public final class RotatedPlanarYUVLuminanceSource extends LuminanceSource {
+
+    private static final int THUMBNAIL_SCALE_FACTOR = 2;
+
+    private final byte[] mYuvData;
+    private final int mDataWidth;
+    private final int mDataHeight;
+    private final int mLeft;
+    private final int mTop;
+    private final byte[] mMatrix;
+    private boolean mMatrixFilled;
+
+    /**
+     * @param yuvData      The preview frame, not rotated.
+     * @param dataWidth    The width of the preview frame.
+     * @param dataHeight   The height of the preview frame.
+     * @param left         Left of the crop, in rotated coordinates.
+     * @param top          Top of the crop, in rotated coordinates.
+     * @param width        Width of the crop.
+     * @param height       Height of the crop.
+     * @param matrixBuffer An array from a previous frame's {@link #getMatrixBuffer()}, reused when
+     *                     it has exactly {@code width * height} bytes, otherwise a new one is
+     *                     allocated. May be {@code null}.
+     */
+    public RotatedPlanarYUVLuminanceSource(byte[] yuvData,
+                                           int dataWidth,
+                                           int dataHeight,
+                                           int left,
+                                           int top,
+                                           int width,
+                                           int height,
+                                           byte[] matrixBuffer) {
+        super(width, height);
+        // The rotated image is dataHeight wide and dataWidth high.
+        if (left < 0 || top < 0 || left + width > dataHeight || top + height > dataWidth) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        this.mYuvData = yuvData;
+        this.mDataWidth = dataWidth;
+        this.mDataHeight = dataHeight;
+        this.mLeft = left;
+        this.mTop = top;
+        if (matrixBuffer != null && matrixBuffer.length == width * height) {
+            mMatrix = matrixBuffer;
+        } else {
+            mMatrix = new byte[width * height];
+        }
+    }
+
+    /**
+     * Rotated pixel (x, y) is original pixel (y, dataHeight - 1 - x).
+     */
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        if (mMatrixFilled) {
+            System.arraycopy(mMatrix, y * width, row, 0, width);
+            return row;
+        }
+        int dataWidth = mDataWidth;
+        int inputOffset = (mDataHeight - 1 - mLeft) * dataWidth + mTop + y;
+        for (int x = 0; x < width; x++) {
+            row[x] = mYuvData[inputOffset];
+            inputOffset -= dataWidth;
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        if (mMatrixFilled) {
+            return mMatrix;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        byte[] matrix = mMatrix;
+        byte[] yuv = mYuvData;
+        // Walk the original rows so the reads stay sequential; each one becomes a column.
+        for (int x = 0; x < width; x++) {
+            int inputOffset = (mDataHeight - 1 - mLeft - x) * mDataWidth + mTop;
+            int outputOffset = x;
+            for (int y = 0; y < height; y++) {
+                matrix[outputOffset] = yuv[inputOffset + y];
+                outputOffset += width;
+            }
+        }
+        mMatrixFilled = true;
+        return matrix;
+    }
+
+    /**
+     * @return The crop-sized array {@link #getMatrix()} fills, to be passed to the source built for
+     * the next frame.
+     */
+    public byte[] getMatrixBuffer() {
+        return mMatrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new RotatedPlanarYUVLuminanceSource(mYuvData,
+                mDataWidth,
+                mDataHeight,
+                mLeft + left,
+                mTop + top,
+                width,
+                height,
+                null);
+    }
+
+    public int[] renderThumbnail() {
+        int width = getThumbnailWidth();
+        int height = getThumbnailHeight();
+        int[] pixels = new int[width * height];
+        byte[] row = null;
+        for (int y = 0; y < height; y++) {
+            row = getRow(y * THUMBNAIL_SCALE_FACTOR, row);
+            int outputOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                int grey = row[x * THUMBNAIL_SCALE_FACTOR] & 0xff;
+                pixels[outputOffset + x] = 0xFF000000 | (grey * 0x00010101);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @return width of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailWidth() {
+        return getWidth() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+    /**
+     * @return height of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailHeight() {
+        return getHeight() / THUMBNAIL_SCALE_FACTOR;
+    }
+}
@@ -0,0 +1,164 @@
+package com.jeffmony.orcode.decode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits a large image into tiles that can each be decoded within a pixel budget, coarse to fine:
+ * first the whole image subsampled until it fits, then overlapping tiles at half the subsampling,
+ * and so on down to tiles at full resolution. Large codes are found early and cheaply, small or
+ * dense ones once the tiles are fine enough to resolve their modules.
+ *
+ * Within a level the tiles nearest the center come first, since that is where codes usually are.
+ * Neighbouring tiles overlap, so that a code no larger than the overlap lies wholly inside at
+ * least one of them.
+ */
+public final class TilePlan {
+
+    public static final float DEFAULT_OVERLAP = 0.25f;
+
+    /**
+     * A region of the image and the subsampling it is read at.
+     */
+    public static final class Tile {
+        private final int mLeft;
+        private final int mTop;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mSampleSize;
+
+        Tile(int left, int top, int width, int height, int sampleSize) {
+            this.mLeft = left;
+            this.mTop = top;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mSampleSize = sampleSize;
+        }
+
+        public int getLeft() {
+            return mLeft;
+        }
+
+        public int getTop() {
+            return mTop;
+        }
+
+        /**
+         * @return The width of the region in the image.
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        /**
+         * @return The height of the region in the image.
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return How many image pixels, across and down, make one tile pixel; a power of two.
+         */
+        public int getSampleSize() {
+            return mSampleSize;
+        }
+
+        /**
+         * @return The width the tile is decoded at.
+         */
+        public int getDecodedWidth() {
+            return (mWidth + mSampleSize - 1) / mSampleSize;
+        }
+
+        /**
+         * @return The height the tile is decoded at.
+         */
+        public int getDecodedHeight() {
+            return (mHeight + mSampleSize - 1) / mSampleSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Tile[" + mLeft + ',' + mTop + ' ' + mWidth + 'x' + mHeight + " /" + mSampleSize + ']';
+        }
+    }
+
+    private TilePlan() {
+    }
+
+    /**
+     * @param width         The width of the image.
+     * @param height        The height of the image.
+     * @param maxTilePixels The most pixels a tile may be decoded at.
+     * @param overlap       The share of a tile that overlaps its neighbours, from 0 to below 1.
+     * @return The tiles, coarse to fine; every one decodes to at most {@code maxTilePixels}.
+     */
+    public static List<Tile> plan(int width, int height, int maxTilePixels, float overlap) {
+        if (width <= 0 || height <= 0) {
+            return Collections.emptyList();
+        }
+        if (maxTilePixels < 1 || overlap < 0 || overlap >= 1) {
+            throw new IllegalArgumentException("maxTilePixels " + maxTilePixels + ", overlap " + overlap);
+        }
+        List<Tile> tiles = new ArrayList<>();
+        int sampleSize = 1;
+        while (decodedPixels(width, sampleSize) * decodedPixels(height, sampleSize) > maxTilePixels) {
+            sampleSize <<= 1;
+        }
+        tiles.add(new Tile(0, 0, width, height, sampleSize));
+
+        // Square tiles, as large as the budget allows once decoded.
+        int decodedSide = Math.max(1, (int) Math.sqrt(maxTilePixels));
+        for (sampleSize >>= 1; sampleSize >= 1; sampleSize >>= 1) {
+            int side = decodedSide * sampleSize;
+            int tileWidth = Math.min(side, width);
+            int tileHeight = Math.min(side, height);
+            List<Tile> level = new ArrayList<>();
+            for (int top : starts(height, tileHeight, overlap)) {
+                for (int left : starts(width, tileWidth, overlap)) {
+                    level.add(new Tile(left, top, tileWidth, tileHeight, sampleSize));
+                }
+            }
+            final float centerX = width / 2f;
+            final float centerY = height / 2f;
+            Collections.sort(level, new Comparator<Tile>() {
+                @Override
+                public int compare(Tile a, Tile b) {
+                    return Float.compare(distance(a, centerX, centerY), distance(b, centerX, centerY));
+                }
+            });
+            tiles.addAll(level);
+        }
+        return tiles;
+    }
+
+    private static long decodedPixels(int size, int sampleSize) {
+        return (size + sampleSize - 1) / sampleSize;
+    }
+
+    /**
+     * @return The offsets of tiles of the given size that cover the length with at least the
+     * given overlap, the last one flush with the end.
+     */
+    private static List<Integer> starts(int length, int tile, float overlap) {
+        List<Integer> starts = new ArrayList<>();
+        if (tile >= length) {
+            starts.add(0);
+            return starts;
+        }
+        int count = 1 + (int) Math.ceil((length - tile) / (tile * (1 - overlap)));
+        for (int i = 0; i < count; i++) {
+            starts.add((int) ((long) (length - tile) * i / (count - 1)));
+        }
+        return starts;
+    }
+
+    private static float distance(Tile tile, float x, float y) {
+        float dx = tile.mLeft + tile.mWidth / 2f - x;
+        float dy = tile.mTop + tile.mHeight / 2f - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,132 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes images too large to hold in memory at once, a {@link TilePlan tile} at a time, so that
+ * dense or small codes are read at full resolution without ever decoding the whole image at it.
+ * Only one tile is held at a time, so memory stays within the tile budget however large the image.
+ *
+ * Result points are in the coordinates of the whole image.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class TiledDecoder {
+
+    /**
+     * Reads the luminance of a tile of the image.
+     */
+    public interface TileSource {
+        /**
+         * @param tile      The tile to read.
+         * @param luminance Receives {@link TilePlan.Tile#getDecodedWidth()} by
+         *                  {@link TilePlan.Tile#getDecodedHeight()} luminance values, row after row.
+         */
+        void read(TilePlan.Tile tile, byte[] luminance) throws IOException;
+    }
+
+    private final Map<DecodeHintType, ?> mHints;
+    private final FrameDecoder mDecoder;
+    private final int mMaxTilePixels;
+    private MultiBarcodeDecoder mMultiDecoder;
+    private byte[] mLuminance;
+    /**
+     * Tile-sized scratch array reused by the rotated sources from one tile to the next.
+     */
+    private byte[] mRotatedMatrix;
+
+    /**
+     * @param hints         The hints every tile is decoded with.
+     * @param scheduler     Orders the decode passes, may be {@code null}.
+     * @param maxTilePixels The most pixels a tile may be decoded at.
+     */
+    public TiledDecoder(Map<DecodeHintType, ?> hints, DecodeStrategyScheduler scheduler, int maxTilePixels) {
+        this.mHints = hints;
+        this.mDecoder = new FrameDecoder(new FormatReader(hints), hints).setScheduler(scheduler);
+        this.mMaxTilePixels = maxTilePixels;
+    }
+
+    /**
+     * Reads the tiles coarse to fine until one of them holds a code.
+     *
+     * @return The first code found, or {@code null} if there is none.
+     */
+    public Result decode(int width, int height, TileSource source) throws IOException {
+        for (TilePlan.Tile tile : TilePlan.plan(width, height, mMaxTilePixels, TilePlan.DEFAULT_OVERLAP)) {
+            final int decodedWidth = tile.getDecodedWidth();
+            final int decodedHeight = tile.getDecodedHeight();
+            final byte[] luminance = read(source, tile);
+            final LuminanceSource tileSource = new PlanarYUVLuminanceSource(luminance,
+                    decodedWidth, decodedHeight, 0, 0, decodedWidth, decodedHeight, false);
+            FrameDecoder.Outcome outcome = mDecoder.decode(new FrameDecoder.Frame() {
+                @Override
+                public LuminanceSource getSource() {
+                    return tileSource;
+                }
+
+                @Override
+                public LuminanceSource getRotatedSource() {
+                    RotatedPlanarYUVLuminanceSource rotated = new RotatedPlanarYUVLuminanceSource(luminance,
+                            decodedWidth, decodedHeight, 0, 0, decodedHeight, decodedWidth, mRotatedMatrix);
+                    mRotatedMatrix = rotated.getMatrixBuffer();
+                    return rotated;
+                }
+            }, null);
+            Result result = outcome.getResult();
+            if (result != null) {
+                if (outcome.getSource() != tileSource) {
+                    // Found by the rotated pass, so its points are in the tile turned clockwise.
+                    result = FrameDecoder.unrotate(result, decodedHeight);
+                }
+                return FrameDecoder.transform(result, tile.getSampleSize(), tile.getLeft(), tile.getTop());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads every tile and collects each distinct code, by format and text, found in any of them.
+     *
+     * @return The codes, empty if there are none.
+     */
+    public Result[] decodeAll(int width, int height, TileSource source) throws IOException {
+        if (mMultiDecoder == null) {
+            mMultiDecoder = new MultiBarcodeDecoder(mHints);
+        }
+        List<Result> results = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (TilePlan.Tile tile : TilePlan.plan(width, height, mMaxTilePixels, TilePlan.DEFAULT_OVERLAP)) {
+            int decodedWidth = tile.getDecodedWidth();
+            int decodedHeight = tile.getDecodedHeight();
+            byte[] luminance = read(source, tile);
+            PlanarYUVLuminanceSource tileSource = new PlanarYUVLuminanceSource(luminance,
+                    decodedWidth, decodedHeight, 0, 0, decodedWidth, decodedHeight, false);
+            for (Result result : mMultiDecoder.decode(DecodeStrategy.HYBRID.binarize(tileSource))) {
+                // Overlapping tiles and finer levels find the same code again.
+                if (seen.add(result.getBarcodeFormat() + ":" + result.getText())) {
+                    results.add(FrameDecoder.transform(result, tile.getSampleSize(), tile.getLeft(), tile.getTop()));
+                }
+            }
+        }
+        return results.toArray(new Result[0]);
+    }
+
+    private byte[] read(TileSource source, TilePlan.Tile tile) throws IOException {
+        int size = tile.getDecodedWidth() * tile.getDecodedHeight();
+        if (mLuminance == null || mLuminance.length < size) {
+            mLuminance = new byte[size];
+        }
+        source.read(tile, mLuminance);
+        return mLuminance;
+    }
+}
@@ -0,0 +1,192 @@
+package com.jeffmony.orcode.encode;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Turns an encoded {@link BitMatrix} into pixels, one int per pixel, row after row, ready for
+ * {@code Bitmap#setPixels} or any other image sink.
+ *
+ * Writers scale every module to a square of pixels, so most rows repeat the row above and every
+ * row is made of long runs of one color. Each distinct row is therefore filled run by run, and
+ * repeated rows are copied instead of read again bit by bit.
+ */
+public final class BitMatrixRenderer {
+
+    /**
+     * The most rows {@link #render(BitMatrix, int, int, PixelSink)} hands over at once.
+     */
+    public static final int BAND_ROWS = 32;
+
+    /**
+     * Receives the pixels of a band of rows.
+     */
+    public interface PixelSink {
+        /**
+         * @param pixels The pixels of the band, {@code matrix.getWidth()} per row, from index 0.
+         *               The array is reused for the next band.
+         * @param top    The first row of the band.
+         * @param rows   The number of rows in the band.
+         */
+        void setPixels(int[] pixels, int top, int rows);
+    }
+
+    private BitMatrixRenderer() {
+    }
+
+    /**
+     * @param matrix   The encoded code.
+     * @param onColor  The color of set modules.
+     * @param offColor The color of the background.
+     * @return {@code matrix.getWidth() * matrix.getHeight()} pixels.
+     */
+    public static int[] render(BitMatrix matrix, int onColor, int offColor) {
+        return render(matrix, onColor, offColor, (int[]) null);
+    }
+
+    /**
+     * Like {@link #render(BitMatrix, int, int)}, writing into the given array if it is large
+     * enough.
+     *
+     * @param pixels An array to reuse, may be {@code null}.
+     * @return The pixels, in {@code pixels} if it was large enough, otherwise in a new array.
+     */
+    public static int[] render(BitMatrix matrix, int onColor, int offColor, int[] pixels) {
+        return render(matrix.getWidth(), matrix.getHeight(), new MatrixRows(matrix, onColor, offColor), pixels);
+    }
+
+    /**
+     * Renders the matrix a band of at most {@link #BAND_ROWS} rows at a time, so that only one band
+     * is held in memory instead of the whole image.
+     */
+    public static void render(BitMatrix matrix, int onColor, int offColor, PixelSink sink) {
+        render(matrix, onColor, offColor, null, sink);
+    }
+
+    /**
+     * Like {@link #render(BitMatrix, int, int, PixelSink)}, reusing the given band array if it is
+     * large enough.
+     *
+     * @param band An array to reuse for the bands, may be {@code null}.
+     * @return The array the bands were rendered in, to pass again next time.
+     */
+    public static int[] render(BitMatrix matrix, int onColor, int offColor, int[] band, PixelSink sink) {
+        return render(matrix.getWidth(), matrix.getHeight(), new MatrixRows(matrix, onColor, offColor), band, sink);
+    }
+
+    /**
+     * Packs the matrix one bit per pixel, as printers take raster images: each row starts on a new
+     * byte, the leftmost pixel in the most significant bit, a set bit for a set module.
+     *
+     * @return {@code (matrix.getWidth() + 7) / 8} bytes per row, row after row.
+     */
+    public static byte[] toPackedRows(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+        byte[] packed = new byte[rowBytes * height];
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            row.toBytes(0, packed, y * rowBytes, rowBytes);
+        }
+        return packed;
+    }
+
+    /**
+     * The rows of an image, asked for from top to bottom: {@link #isRepeated(int)} for every row
+     * but the first, then {@link #render(int, int[], int)} if it isn't repeated.
+     */
+    interface Rows {
+        /**
+         * @return Whether row {@code y} has the same pixels as row {@code y - 1}, which then isn't
+         * rendered but copied.
+         */
+        boolean isRepeated(int y);
+
+        void render(int y, int[] pixels, int offset);
+    }
+
+    static int[] render(int width, int height, Rows rows, int[] pixels) {
+        if (pixels == null || pixels.length < width * height) {
+            pixels = new int[width * height];
+        }
+        for (int y = 0; y < height; y++) {
+            if (y > 0 && rows.isRepeated(y)) {
+                System.arraycopy(pixels, (y - 1) * width, pixels, y * width, width);
+            } else {
+                rows.render(y, pixels, y * width);
+            }
+        }
+        return pixels;
+    }
+
+    static int[] render(int width, int height, Rows rows, int[] band, PixelSink sink) {
+        int bandRows = Math.min(height, BAND_ROWS);
+        if (band == null || band.length < width * bandRows) {
+            band = new int[width * bandRows];
+        }
+        int top = 0;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            if (count == bandRows) {
+                sink.setPixels(band, top, count);
+                top = y;
+                count = 0;
+            }
+            if (y > 0 && rows.isRepeated(y)) {
+                // Right after a full band was handed over, the previous row is still in its last slot.
+                int from = count > 0 ? (count - 1) * width : (bandRows - 1) * width;
+                System.arraycopy(band, from, band, count * width, width);
+            } else {
+                rows.render(y, band, count * width);
+            }
+            count++;
+        }
+        if (count > 0) {
+            sink.setPixels(band, top, count);
+        }
+        return band;
+    }
+
+    private static final class MatrixRows implements Rows {
+        private final BitMatrix mMatrix;
+        private final int mOnColor;
+        private final int mOffColor;
+        private BitArray mRow;
+        private BitArray mPrevious;
+
+        MatrixRows(BitMatrix matrix, int onColor, int offColor) {
+            this.mMatrix = matrix;
+            this.mOnColor = onColor;
+            this.mOffColor = offColor;
+            this.mRow = new BitArray(matrix.getWidth());
+            this.mPrevious = new BitArray(matrix.getWidth());
+        }
+
+        @Override
+        public boolean isRepeated(int y) {
+            BitArray swap = mPrevious;
+            mPrevious = mRow;
+            mRow = mMatrix.getRow(y, swap);
+            return mRow.equals(mPrevious);
+        }
+
+        @Override
+        public void render(int y, int[] pixels, int offset) {
+            if (y == 0) {
+                mRow = mMatrix.getRow(0, mRow);
+            }
+            int width = mMatrix.getWidth();
+            int x = 0;
+            while (x < width) {
+                boolean set = mRow.get(x);
+                int end = set ? mRow.getNextUnset(x) : mRow.getNextSet(x);
+                Arrays.fill(pixels, offset + x, offset + end, set ? mOnColor : mOffColor);
+                x = end;
+            }
+        }
+    }
+}
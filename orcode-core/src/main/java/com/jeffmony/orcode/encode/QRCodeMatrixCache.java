@@ -0,0 +1,137 @@
+package com.jeffmony.orcode.encode;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers encoded QR codes, keyed by content and encode hints, so that the same content at
+ * another size, margin or color is only rasterized again, not encoded again. Choosing the version
+ * and the mask and computing the error correction is the costly part of {@link QRCodeWriter};
+ * the module matrix it produces does not depend on the output size.
+ *
+ * {@link EncodeHintType#MARGIN} only affects rendering and is left out of the key. At most
+ * {@code capacity} codes are remembered, the least recently used one is forgotten first. A
+ * version 40 code takes about 31 KB.
+ *
+ * One instance may be shared by several threads.
+ */
+public final class QRCodeMatrixCache {
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final LinkedHashMap<Key, QRCode> mCodes;
+    private int mHitCount;
+    private int mMissCount;
+
+    public QRCodeMatrixCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity How many codes are remembered at most.
+     */
+    public QRCodeMatrixCache(final int capacity) {
+        final int maxSize = Math.max(1, capacity);
+        mCodes = new LinkedHashMap<Key, QRCode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, QRCode> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The encoded code, from the cache if the same content was encoded with the same hints
+     * before.
+     */
+    public QRCode encode(String contents, Map<EncodeHintType, ?> hints) throws WriterException {
+        if (contents == null || contents.isEmpty()) {
+            throw new IllegalArgumentException("Found empty contents");
+        }
+        Key key = new Key(contents, hints);
+        synchronized (this) {
+            QRCode code = mCodes.get(key);
+            if (code != null) {
+                mHitCount++;
+                return code;
+            }
+            mMissCount++;
+        }
+        ErrorCorrectionLevel level = ErrorCorrectionLevel.L;
+        if (hints != null && hints.containsKey(EncodeHintType.ERROR_CORRECTION)) {
+            level = ErrorCorrectionLevel.valueOf(hints.get(EncodeHintType.ERROR_CORRECTION).toString());
+        }
+        QRCode code = Encoder.encode(contents, level, hints);
+        synchronized (this) {
+            mCodes.put(key, code);
+        }
+        return code;
+    }
+
+    /**
+     * Same as {@link QRCodeWriter#encode(String, com.google.zxing.BarcodeFormat, int, int, Map)},
+     * encoding only if the content isn't cached.
+     */
+    public BitMatrix encode(String contents, int width, int height, Map<EncodeHintType, ?> hints)
+            throws WriterException {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Requested dimensions are too small: " + width + 'x' + height);
+        }
+        return QRCodeRenderer.toBitMatrix(encode(contents, hints), width, height,
+                QRCodeRenderer.getQuietZone(hints));
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized void clear() {
+        mCodes.clear();
+    }
+
+    private static final class Key {
+        private final String mContents;
+        private final Map<EncodeHintType, Object> mHints;
+        private final int mHashCode;
+
+        Key(String contents, Map<EncodeHintType, ?> hints) {
+            this.mContents = contents;
+            this.mHints = new EnumMap<>(EncodeHintType.class);
+            if (hints != null) {
+                this.mHints.putAll(hints);
+                this.mHints.remove(EncodeHintType.MARGIN);
+            }
+            this.mHashCode = 31 * mContents.hashCode() + mHints.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mContents.equals(key.mContents) && mHints.equals(key.mHints);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
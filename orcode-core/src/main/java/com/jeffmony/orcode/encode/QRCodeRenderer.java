@@ -0,0 +1,182 @@
+package com.jeffmony.orcode.encode;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Lays an encoded {@link QRCode} out at any size, exactly as {@link QRCodeWriter} does: every
+ * module becomes a square of the largest whole number of pixels that fits, the code is centered
+ * and the rest is background.
+ */
+public final class QRCodeRenderer {
+
+    /**
+     * The margin {@link QRCodeWriter} leaves around the code, in modules.
+     */
+    public static final int QUIET_ZONE_SIZE = 4;
+
+    private QRCodeRenderer() {
+    }
+
+    /**
+     * @return The {@link EncodeHintType#MARGIN} hint, or {@link #QUIET_ZONE_SIZE} if there is none.
+     */
+    public static int getQuietZone(Map<EncodeHintType, ?> hints) {
+        if (hints != null && hints.containsKey(EncodeHintType.MARGIN)) {
+            return Integer.parseInt(hints.get(EncodeHintType.MARGIN).toString());
+        }
+        return QUIET_ZONE_SIZE;
+    }
+
+    /**
+     * @param size The requested width or height.
+     * @return The width or height the code is laid out at: the requested one, or more if the code
+     * doesn't fit.
+     */
+    public static int getOutputSize(QRCode code, int size, int quietZone) {
+        return Math.max(size, code.getMatrix().getWidth() + (quietZone * 2));
+    }
+
+    /**
+     * @param width     The requested width; the matrix is wider if the code doesn't fit.
+     * @param height    The requested height; the matrix is higher if the code doesn't fit.
+     * @param quietZone The margin around the code, in modules.
+     */
+    public static BitMatrix toBitMatrix(QRCode code, int width, int height, int quietZone) {
+        ByteMatrix input = code.getMatrix();
+        if (input == null) {
+            throw new IllegalStateException();
+        }
+        int inputWidth = input.getWidth();
+        int inputHeight = input.getHeight();
+        int qrWidth = inputWidth + (quietZone * 2);
+        int qrHeight = inputHeight + (quietZone * 2);
+        int outputWidth = Math.max(width, qrWidth);
+        int outputHeight = Math.max(height, qrHeight);
+
+        int multiple = Math.min(outputWidth / qrWidth, outputHeight / qrHeight);
+        int leftPadding = (outputWidth - (inputWidth * multiple)) / 2;
+        int topPadding = (outputHeight - (inputHeight * multiple)) / 2;
+
+        BitMatrix output = new BitMatrix(outputWidth, outputHeight);
+        for (int inputY = 0, outputY = topPadding; inputY < inputHeight; inputY++, outputY += multiple) {
+            for (int inputX = 0, outputX = leftPadding; inputX < inputWidth; inputX++, outputX += multiple) {
+                if (input.get(inputX, inputY) == 1) {
+                    output.setRegion(outputX, outputY, multiple, multiple);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Renders the code as {@link #toBitMatrix(QRCode, int, int, int)} lays it out, straight from
+     * its modules: every module row is filled once and copied for the rest of its height.
+     *
+     * @return {@code width * height} pixels, or more if the code doesn't fit, see
+     * {@link #toBitMatrix(QRCode, int, int, int)}.
+     */
+    public static int[] render(QRCode code, int width, int height, int quietZone, int onColor, int offColor) {
+        ModuleRows rows = new ModuleRows(code, width, height, quietZone, onColor, offColor);
+        return BitMatrixRenderer.render(rows.mOutputWidth, rows.mOutputHeight, rows, (int[]) null);
+    }
+
+    /**
+     * Like {@link #render(QRCode, int, int, int, int, int)}, a band at a time, see
+     * {@link BitMatrixRenderer#render(BitMatrix, int, int, BitMatrixRenderer.PixelSink)}.
+     */
+    public static void render(QRCode code, int width, int height, int quietZone, int onColor, int offColor,
+                              BitMatrixRenderer.PixelSink sink) {
+        render(code, width, height, quietZone, onColor, offColor, null, sink);
+    }
+
+    /**
+     * Like {@link #render(QRCode, int, int, int, int, int, BitMatrixRenderer.PixelSink)}, reusing
+     * the given band array if it is large enough.
+     *
+     * @param band An array to reuse for the bands, may be {@code null}.
+     * @return The array the bands were rendered in, to pass again next time.
+     */
+    public static int[] render(QRCode code, int width, int height, int quietZone, int onColor, int offColor,
+                               int[] band, BitMatrixRenderer.PixelSink sink) {
+        ModuleRows rows = new ModuleRows(code, width, height, quietZone, onColor, offColor);
+        return BitMatrixRenderer.render(rows.mOutputWidth, rows.mOutputHeight, rows, band, sink);
+    }
+
+    /**
+     * The same layout as {@link #toBitMatrix(QRCode, int, int, int)}.
+     */
+    private static final class ModuleRows implements BitMatrixRenderer.Rows {
+        private final ByteMatrix mInput;
+        private final int mOutputWidth;
+        private final int mOutputHeight;
+        private final int mMultiple;
+        private final int mLeftPadding;
+        private final int mTopPadding;
+        private final int mOnColor;
+        private final int mOffColor;
+
+        ModuleRows(QRCode code, int width, int height, int quietZone, int onColor, int offColor) {
+            mInput = code.getMatrix();
+            if (mInput == null) {
+                throw new IllegalStateException();
+            }
+            int qrWidth = mInput.getWidth() + (quietZone * 2);
+            int qrHeight = mInput.getHeight() + (quietZone * 2);
+            mOutputWidth = Math.max(width, qrWidth);
+            mOutputHeight = Math.max(height, qrHeight);
+            mMultiple = Math.min(mOutputWidth / qrWidth, mOutputHeight / qrHeight);
+            mLeftPadding = (mOutputWidth - (mInput.getWidth() * mMultiple)) / 2;
+            mTopPadding = (mOutputHeight - (mInput.getHeight() * mMultiple)) / 2;
+            mOnColor = onColor;
+            mOffColor = offColor;
+        }
+
+        /**
+         * @return The module row the output row falls in, or -1 in the margin.
+         */
+        private int moduleRow(int y) {
+            if (y < mTopPadding) {
+                return -1;
+            }
+            int row = (y - mTopPadding) / mMultiple;
+            return row < mInput.getHeight() ? row : -1;
+        }
+
+        @Override
+        public boolean isRepeated(int y) {
+            return moduleRow(y) == moduleRow(y - 1);
+        }
+
+        @Override
+        public void render(int y, int[] pixels, int offset) {
+            Arrays.fill(pixels, offset, offset + mOutputWidth, mOffColor);
+            int row = moduleRow(y);
+            if (row < 0) {
+                return;
+            }
+            byte[][] modules = mInput.getArray();
+            byte[] line = modules[row];
+            int x = 0;
+            while (x < line.length) {
+                if (line[x] != 1) {
+                    x++;
+                    continue;
+                }
+                int end = x + 1;
+                while (end < line.length && line[end] == 1) {
+                    end++;
+                }
+                int from = offset + mLeftPadding + x * mMultiple;
+                Arrays.fill(pixels, from, from + (end - x) * mMultiple, mOnColor);
+                x = end;
+            }
+        }
+    }
+}
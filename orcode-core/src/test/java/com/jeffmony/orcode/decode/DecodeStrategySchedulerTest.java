@@ -0,0 +1,191 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeStrategySchedulerTest {
+
+    private static final Set<DecodeStrategy> ALL = EnumSet.allOf(DecodeStrategy.class);
+    private static final long COST_NANOS = 1000000L;
+
+    /**
+     * Records {@code count} attempts of the pass, all with the same outcome and cost.
+     */
+    private static void record(DecodeStrategyScheduler scheduler, DecodeStrategy strategy, boolean success, int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.record(strategy, success, COST_NANOS);
+        }
+    }
+
+    @Test
+    public void declaredOrderWithoutStatistics() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        assertEquals(Arrays.asList(DecodeStrategy.values()), scheduler.order(ALL));
+    }
+
+    @Test
+    public void onlyEnabledPassesAreOrdered() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        assertEquals(Arrays.asList(DecodeStrategy.HYBRID, DecodeStrategy.ROTATED),
+                scheduler.order(EnumSet.of(DecodeStrategy.ROTATED, DecodeStrategy.HYBRID)));
+    }
+
+    @Test
+    public void successfulPassesGoFirst() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        record(scheduler, DecodeStrategy.HYBRID, false, 8);
+        record(scheduler, DecodeStrategy.GLOBAL_HISTOGRAM, true, 8);
+        List<DecodeStrategy> order = scheduler.order(EnumSet.of(DecodeStrategy.HYBRID, DecodeStrategy.GLOBAL_HISTOGRAM));
+        assertEquals(Arrays.asList(DecodeStrategy.GLOBAL_HISTOGRAM, DecodeStrategy.HYBRID), order);
+    }
+
+    @Test
+    public void cheaperPassGoesFirstAtTheSameSuccessRate() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        for (int i = 0; i < 8; i++) {
+            scheduler.record(DecodeStrategy.HYBRID, true, 10 * COST_NANOS);
+            scheduler.record(DecodeStrategy.GLOBAL_HISTOGRAM, true, COST_NANOS);
+        }
+        List<DecodeStrategy> order = scheduler.order(EnumSet.of(DecodeStrategy.HYBRID, DecodeStrategy.GLOBAL_HISTOGRAM));
+        assertEquals(DecodeStrategy.GLOBAL_HISTOGRAM, order.get(0));
+    }
+
+    @Test
+    public void unrankedPassesRunAfterRankedOnes() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        record(scheduler, DecodeStrategy.GLOBAL_HISTOGRAM, true, 8);
+        record(scheduler, DecodeStrategy.HYBRID, false, 7);
+        List<DecodeStrategy> order = scheduler.order(EnumSet.of(DecodeStrategy.HYBRID, DecodeStrategy.GLOBAL_HISTOGRAM));
+        assertEquals(Arrays.asList(DecodeStrategy.GLOBAL_HISTOGRAM, DecodeStrategy.HYBRID), order);
+    }
+
+    @Test
+    public void failingPassIsSkippedExceptWhenExploring() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler(8);
+        record(scheduler, DecodeStrategy.HYBRID, false, 8);
+        record(scheduler, DecodeStrategy.GLOBAL_HISTOGRAM, true, 8);
+        Set<DecodeStrategy> enabled = EnumSet.of(DecodeStrategy.HYBRID, DecodeStrategy.GLOBAL_HISTOGRAM);
+        for (int decode = 1; decode <= 32; decode++) {
+            List<DecodeStrategy> order = scheduler.order(enabled);
+            assertEquals("decode " + decode, decode % 16 == 0, order.contains(DecodeStrategy.HYBRID));
+            assertEquals(DecodeStrategy.GLOBAL_HISTOGRAM, order.get(0));
+        }
+    }
+
+    @Test
+    public void declaredOrderWhenNotAdaptive() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        record(scheduler, DecodeStrategy.HYBRID, false, 64);
+        record(scheduler, DecodeStrategy.GLOBAL_HISTOGRAM, true, 64);
+        scheduler.setAdaptive(false);
+        assertEquals(Arrays.asList(DecodeStrategy.values()), scheduler.order(ALL));
+    }
+
+    @Test
+    public void resetForgetsStatistics() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        record(scheduler, DecodeStrategy.HYBRID, false, 8);
+        record(scheduler, DecodeStrategy.GLOBAL_HISTOGRAM, true, 8);
+        scheduler.reset();
+        assertEquals(Arrays.asList(DecodeStrategy.values()), scheduler.order(ALL));
+        for (DecodeStrategyScheduler.Statistics statistics : scheduler.getStatistics()) {
+            assertEquals(0, statistics.getAttempts());
+        }
+    }
+
+    @Test
+    public void decodeStopsAtFirstSuccessAndRecordsEachPass() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        RecordingRunner runner = new RecordingRunner(DecodeStrategy.GLOBAL_HISTOGRAM);
+        Result result = scheduler.decode(ALL, runner);
+
+        assertSame(runner.mResult, result);
+        assertEquals(Arrays.asList(DecodeStrategy.HYBRID, DecodeStrategy.HYBRID_INVERTED,
+                DecodeStrategy.GLOBAL_HISTOGRAM), runner.mRun);
+        for (DecodeStrategyScheduler.Statistics statistics : scheduler.getStatistics()) {
+            boolean ran = runner.mRun.contains(statistics.getStrategy());
+            assertEquals(statistics.getStrategy().toString(), ran ? 1 : 0, statistics.getAttempts());
+            assertEquals(statistics.getStrategy() == DecodeStrategy.GLOBAL_HISTOGRAM ? 1 : 0, statistics.getSuccesses());
+        }
+    }
+
+    @Test
+    public void passesThatDoNotApplyAreNotCounted() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        RecordingRunner runner = new RecordingRunner(null);
+        runner.mNotApplicable = DecodeStrategy.ROTATED;
+        assertNull(scheduler.decode(ALL, runner));
+        assertEquals(ALL.size(), runner.mRun.size());
+        for (DecodeStrategyScheduler.Statistics statistics : scheduler.getStatistics()) {
+            assertEquals(statistics.getStrategy() == DecodeStrategy.ROTATED ? 0 : 1, statistics.getAttempts());
+        }
+    }
+
+    @Test
+    public void cancelledDecodeRunsNothing() {
+        DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        RecordingRunner runner = new RecordingRunner(DecodeStrategy.HYBRID);
+        runner.mCancelled = true;
+        assertNull(scheduler.decode(ALL, runner));
+        assertNull(DecodeStrategyScheduler.decodeInOrder(ALL, runner));
+        assertTrue(runner.mRun.isEmpty());
+    }
+
+    @Test
+    public void decodeInOrderSkipsDisabledPassesAndKeepsNoStatistics() {
+        RecordingRunner runner = new RecordingRunner(DecodeStrategy.ROTATED);
+        Result result = DecodeStrategyScheduler.decodeInOrder(
+                EnumSet.of(DecodeStrategy.ROTATED, DecodeStrategy.HYBRID), runner);
+        assertSame(runner.mResult, result);
+        assertEquals(Arrays.asList(DecodeStrategy.HYBRID, DecodeStrategy.ROTATED), runner.mRun);
+        assertFalse(runner.mRun.contains(DecodeStrategy.GLOBAL_HISTOGRAM));
+    }
+
+    /**
+     * Succeeds only on one pass, and remembers which passes it ran.
+     */
+    private static final class RecordingRunner implements DecodeStrategyScheduler.StrategyRunner {
+
+        private final DecodeStrategy mSucceeding;
+        private final Result mResult = new Result("code", null, null, BarcodeFormat.QR_CODE);
+        private final List<DecodeStrategy> mRun = new ArrayList<>();
+        private DecodeStrategy mNotApplicable;
+        private boolean mCancelled;
+
+        RecordingRunner(DecodeStrategy succeeding) {
+            this.mSucceeding = succeeding;
+        }
+
+        @Override
+        public Result run(DecodeStrategy strategy) throws Exception {
+            mRun.add(strategy);
+            if (strategy == mNotApplicable) {
+                return null;
+            }
+            if (strategy != mSucceeding) {
+                throw NotFoundException.getNotFoundInstance();
+            }
+            return mResult;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+}
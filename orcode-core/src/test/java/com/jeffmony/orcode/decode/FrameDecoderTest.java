@@ -0,0 +1,117 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameDecoderTest {
+
+    private static final String CONTENT = "orcode";
+    private static final int SIZE = 240;
+
+    private static Map<DecodeHintType, Object> hints() {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(BarcodeFormat.QR_CODE));
+        return hints;
+    }
+
+    /**
+     * A luminance frame showing a QR code, dark modules on a light background.
+     */
+    private static LuminanceSource codeSource() throws WriterException {
+        BitMatrix matrix = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, SIZE, SIZE);
+        byte[] luminance = new byte[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                luminance[y * SIZE + x] = (byte) (matrix.get(x, y) ? 0 : 0xff);
+            }
+        }
+        return new PlanarYUVLuminanceSource(luminance, SIZE, SIZE, 0, 0, SIZE, SIZE, false);
+    }
+
+    private static FrameDecoder.Frame frame(final LuminanceSource source) {
+        return new FrameDecoder.Frame() {
+            @Override
+            public LuminanceSource getSource() {
+                return source;
+            }
+
+            @Override
+            public LuminanceSource getRotatedSource() {
+                return null;
+            }
+        };
+    }
+
+    private static final CodeDecoder.Cancellation CANCELLED = new CodeDecoder.Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return true;
+        }
+    };
+
+    @Test
+    public void decodesTheFrame() throws WriterException {
+        LuminanceSource source = codeSource();
+        FrameDecoder.Outcome outcome = new FrameDecoder(hints()).decode(frame(source), null);
+        assertEquals(CONTENT, outcome.getResult().getText());
+        assertSame(source, outcome.getSource());
+        assertTrue(outcome.isSharp());
+    }
+
+    @Test
+    public void multiDecodeFindsTheCode() throws WriterException {
+        FrameDecoder.Outcome outcome = new FrameDecoder(hints()).setMultiDecode(true).decode(frame(codeSource()), null);
+        assertEquals(1, outcome.getResults().length);
+        assertEquals(CONTENT, outcome.getResults()[0].getText());
+    }
+
+    @Test
+    public void duplicatesAreDropped() throws WriterException {
+        FrameDecoder decoder = new FrameDecoder(hints()).setDuplicateResultFilter(new DuplicateResultFilter());
+        assertEquals(CONTENT, decoder.decode(frame(codeSource()), null).getResult().getText());
+        assertNull(decoder.decode(frame(codeSource()), null).getResult());
+    }
+
+    @Test
+    public void cancelledFrameFindsNothing() throws WriterException {
+        FrameDecoder decoder = new FrameDecoder(hints()).setRegionTracker(new RegionTracker());
+        FrameDecoder.Outcome outcome = decoder.decode(frame(codeSource()), CANCELLED);
+        assertNull(outcome.getResult());
+        assertEquals(0, outcome.getResults().length);
+    }
+
+    @Test
+    public void blankFrameFindsNothing() {
+        byte[] luminance = new byte[SIZE * SIZE];
+        FrameDecoder.Outcome outcome = new FrameDecoder(hints())
+                .setStrategies(Collections.singleton(DecodeStrategy.HYBRID))
+                .decode(frame(new PlanarYUVLuminanceSource(luminance, SIZE, SIZE, 0, 0, SIZE, SIZE, false)), null);
+        assertNull(outcome.getResult());
+    }
+
+    @Test
+    public void frameWithoutSourceFindsNothing() {
+        FrameDecoder.Outcome outcome = new FrameDecoder(hints()).decode(frame(null), null);
+        assertNull(outcome.getResult());
+        assertNull(outcome.getSource());
+        assertFalse(outcome.getResults().length > 0);
+    }
+}
@@ -0,0 +1,135 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RotatedPlanarYUVLuminanceSourceTest {
+
+    private static final int DATA_WIDTH = 7;
+    private static final int DATA_HEIGHT = 5;
+
+    /**
+     * A frame whose every Y sample is distinct, followed by a chroma plane that must never be read.
+     */
+    private static byte[] frame() {
+        byte[] yuv = new byte[DATA_WIDTH * DATA_HEIGHT * 3 / 2];
+        for (int i = 0; i < yuv.length; i++) {
+            yuv[i] = (byte) (i < DATA_WIDTH * DATA_HEIGHT ? i : 0xff);
+        }
+        return yuv;
+    }
+
+    /**
+     * The Y plane turned 90 degrees clockwise the slow way, into a DATA_HEIGHT x DATA_WIDTH image.
+     */
+    private static byte[] rotateClockwise(byte[] yuv) {
+        byte[] rotated = new byte[DATA_WIDTH * DATA_HEIGHT];
+        for (int y = 0; y < DATA_HEIGHT; y++) {
+            for (int x = 0; x < DATA_WIDTH; x++) {
+                rotated[x * DATA_HEIGHT + DATA_HEIGHT - 1 - y] = yuv[y * DATA_WIDTH + x];
+            }
+        }
+        return rotated;
+    }
+
+    private static byte[] rows(LuminanceSource source) {
+        int width = source.getWidth();
+        byte[] rows = new byte[width * source.getHeight()];
+        byte[] row = null;
+        for (int y = 0; y < source.getHeight(); y++) {
+            row = source.getRow(y, row);
+            System.arraycopy(row, 0, rows, y * width, width);
+        }
+        return rows;
+    }
+
+    @Test
+    public void wholeFrameMatchesRotatedCopy() {
+        byte[] yuv = frame();
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 0, 0, DATA_HEIGHT, DATA_WIDTH, null);
+        byte[] expected = rotateClockwise(yuv);
+
+        assertEquals(DATA_HEIGHT, source.getWidth());
+        assertEquals(DATA_WIDTH, source.getHeight());
+        assertArrayEquals(expected, rows(source));
+        assertArrayEquals(expected, source.getMatrix());
+    }
+
+    @Test
+    public void cropMatchesCropOfRotatedCopy() {
+        byte[] yuv = frame();
+        PlanarYUVLuminanceSource expected = new PlanarYUVLuminanceSource(rotateClockwise(yuv),
+                DATA_HEIGHT, DATA_WIDTH, 1, 2, 3, 4, false);
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 1, 2, 3, 4, null);
+
+        assertArrayEquals(expected.getMatrix(), rows(source));
+        assertArrayEquals(expected.getMatrix(), source.getMatrix());
+        // Rows read after the matrix was filled come from the matrix.
+        assertArrayEquals(expected.getMatrix(), rows(source));
+    }
+
+    @Test
+    public void cropOfCropAddsOffsets() {
+        byte[] yuv = frame();
+        LuminanceSource expected = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 2, 3, 2, 3, null);
+        LuminanceSource source = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 1, 1, 4, 5, null).crop(1, 2, 2, 3);
+
+        assertArrayEquals(expected.getMatrix(), source.getMatrix());
+    }
+
+    @Test
+    public void matrixBufferIsReusedOnlyWhenItFits() {
+        byte[] yuv = frame();
+        RotatedPlanarYUVLuminanceSource first = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 0, 0, 3, 4, null);
+        byte[] buffer = first.getMatrixBuffer();
+        assertEquals(3 * 4, buffer.length);
+
+        RotatedPlanarYUVLuminanceSource same = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 1, 1, 3, 4, buffer);
+        assertSame(buffer, same.getMatrixBuffer());
+        assertSame(buffer, same.getMatrix());
+
+        RotatedPlanarYUVLuminanceSource other = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, 0, 0, 4, 4, buffer);
+        assertNotSame(buffer, other.getMatrixBuffer());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cropOutsideRotatedFrameIsRejected() {
+        // The rotated frame is only DATA_HEIGHT wide.
+        new RotatedPlanarYUVLuminanceSource(frame(), DATA_WIDTH, DATA_HEIGHT, 1, 0, DATA_HEIGHT, 1, null);
+    }
+
+    @Test
+    public void decodeYuvRotatesTheRequestedCrop() {
+        // The crop CodeDecoder#decodeYuv rotates: the crop left..left+width, top..top+height of
+        // the frame, turned clockwise.
+        byte[] yuv = frame();
+        int left = 2;
+        int top = 1;
+        int width = 4;
+        int height = 3;
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(yuv,
+                DATA_WIDTH, DATA_HEIGHT, DATA_HEIGHT - top - height, left, height, width, null);
+        byte[] crop = new PlanarYUVLuminanceSource(yuv, DATA_WIDTH, DATA_HEIGHT,
+                left, top, width, height, false).getMatrix();
+        byte[] matrix = source.getMatrix();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(crop[y * width + x], matrix[x * height + height - 1 - y]);
+            }
+        }
+    }
+}
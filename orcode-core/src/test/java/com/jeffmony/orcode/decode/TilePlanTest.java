@@ -0,0 +1,125 @@
+package com.jeffmony.orcode.decode;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TilePlanTest {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 700;
+    private static final int MAX_TILE_PIXELS = 200 * 200;
+
+    private static List<TilePlan.Tile> plan() {
+        return TilePlan.plan(WIDTH, HEIGHT, MAX_TILE_PIXELS, TilePlan.DEFAULT_OVERLAP);
+    }
+
+    @Test
+    public void everyTileFitsTheBudget() {
+        for (TilePlan.Tile tile : plan()) {
+            assertTrue(tile.toString(), tile.getDecodedWidth() * tile.getDecodedHeight() <= MAX_TILE_PIXELS);
+            assertTrue(tile.toString(), tile.getLeft() >= 0 && tile.getTop() >= 0);
+            assertTrue(tile.toString(), tile.getLeft() + tile.getWidth() <= WIDTH);
+            assertTrue(tile.toString(), tile.getTop() + tile.getHeight() <= HEIGHT);
+        }
+    }
+
+    @Test
+    public void firstTileIsTheWholeImage() {
+        TilePlan.Tile first = plan().get(0);
+        assertEquals(0, first.getLeft());
+        assertEquals(0, first.getTop());
+        assertEquals(WIDTH, first.getWidth());
+        assertEquals(HEIGHT, first.getHeight());
+        assertEquals(8, first.getSampleSize());
+    }
+
+    @Test
+    public void levelsGoCoarseToFineDownToFullResolution() {
+        List<TilePlan.Tile> tiles = plan();
+        int sampleSize = Integer.MAX_VALUE;
+        for (TilePlan.Tile tile : tiles) {
+            assertEquals(tile.toString(), 0, tile.getSampleSize() & (tile.getSampleSize() - 1));
+            assertTrue(tile.toString(), tile.getSampleSize() <= sampleSize);
+            sampleSize = tile.getSampleSize();
+        }
+        assertEquals(1, sampleSize);
+    }
+
+    @Test
+    public void everyLevelCoversTheImage() {
+        List<TilePlan.Tile> tiles = plan();
+        for (int sampleSize = tiles.get(0).getSampleSize(); sampleSize >= 1; sampleSize >>= 1) {
+            boolean[] covered = new boolean[WIDTH * HEIGHT];
+            for (TilePlan.Tile tile : tiles) {
+                if (tile.getSampleSize() != sampleSize) {
+                    continue;
+                }
+                for (int y = tile.getTop(); y < tile.getTop() + tile.getHeight(); y++) {
+                    for (int x = tile.getLeft(); x < tile.getLeft() + tile.getWidth(); x++) {
+                        covered[y * WIDTH + x] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < covered.length; i++) {
+                assertTrue("sample size " + sampleSize + " misses " + (i % WIDTH) + "," + (i / WIDTH), covered[i]);
+            }
+        }
+    }
+
+    @Test
+    public void neighbouringTilesOverlap() {
+        // Any square the size of the overlap lies wholly within some full resolution tile.
+        int side = (int) (200 * TilePlan.DEFAULT_OVERLAP);
+        List<TilePlan.Tile> tiles = plan();
+        for (int top = 0; top + side <= HEIGHT; top += 7) {
+            for (int left = 0; left + side <= WIDTH; left += 7) {
+                boolean inside = false;
+                for (TilePlan.Tile tile : tiles) {
+                    if (tile.getSampleSize() == 1
+                            && left >= tile.getLeft() && left + side <= tile.getLeft() + tile.getWidth()
+                            && top >= tile.getTop() && top + side <= tile.getTop() + tile.getHeight()) {
+                        inside = true;
+                        break;
+                    }
+                }
+                assertTrue(left + "," + top, inside);
+            }
+        }
+    }
+
+    @Test
+    public void tilesNearestTheCenterComeFirstWithinALevel() {
+        float previous = -1;
+        for (TilePlan.Tile tile : plan()) {
+            if (tile.getSampleSize() != 1) {
+                continue;
+            }
+            float dx = tile.getLeft() + tile.getWidth() / 2f - WIDTH / 2f;
+            float dy = tile.getTop() + tile.getHeight() / 2f - HEIGHT / 2f;
+            float distance = dx * dx + dy * dy;
+            assertTrue(tile.toString(), distance >= previous);
+            previous = distance;
+        }
+    }
+
+    @Test
+    public void smallImageIsASingleTile() {
+        List<TilePlan.Tile> tiles = TilePlan.plan(100, 80, MAX_TILE_PIXELS, TilePlan.DEFAULT_OVERLAP);
+        assertEquals(1, tiles.size());
+        assertEquals(1, tiles.get(0).getSampleSize());
+    }
+
+    @Test
+    public void emptyImageHasNoTiles() {
+        assertTrue(TilePlan.plan(0, 80, MAX_TILE_PIXELS, TilePlan.DEFAULT_OVERLAP).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fullOverlapIsRejected() {
+        TilePlan.plan(WIDTH, HEIGHT, MAX_TILE_PIXELS, 1f);
+    }
+}
@@ -0,0 +1,103 @@
+package com.jeffmony.orcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TiledDecoderTest {
+
+    private static final String CONTENT = "orcode-0123";
+    private static final int WIDTH = 3000;
+    private static final int HEIGHT = 2000;
+    private static final int MAX_TILE_PIXELS = 1024 * 1024;
+
+    private static final int CODE_LENGTH = 564;
+    private static final int CODE_THICKNESS = 300;
+
+    private static Map<DecodeHintType, Object> hints() {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(BarcodeFormat.CODE_128));
+        return hints;
+    }
+
+    /**
+     * A light image with a Code 128 at the given place, its bars across its length.
+     *
+     * @param vertical Whether the code runs down the image rather than across it.
+     */
+    private static byte[] image(int left, int top, boolean vertical) throws WriterException {
+        BitMatrix matrix = new Code128Writer().encode(CONTENT, BarcodeFormat.CODE_128, CODE_LENGTH, CODE_THICKNESS);
+        byte[] luminance = new byte[WIDTH * HEIGHT];
+        Arrays.fill(luminance, (byte) 0xff);
+        for (int along = 0; along < CODE_LENGTH; along++) {
+            for (int across = 0; across < CODE_THICKNESS; across++) {
+                if (matrix.get(along, across)) {
+                    int x = vertical ? left + across : left + along;
+                    int y = vertical ? top + along : top + across;
+                    luminance[y * WIDTH + x] = 0;
+                }
+            }
+        }
+        return luminance;
+    }
+
+    /**
+     * Reads the tiles of the image, keeping one pixel in {@link TilePlan.Tile#getSampleSize()}.
+     */
+    private static TiledDecoder.TileSource source(final byte[] image) {
+        return new TiledDecoder.TileSource() {
+            @Override
+            public void read(TilePlan.Tile tile, byte[] luminance) {
+                int sampleSize = tile.getSampleSize();
+                for (int y = 0; y < tile.getDecodedHeight(); y++) {
+                    for (int x = 0; x < tile.getDecodedWidth(); x++) {
+                        luminance[y * tile.getDecodedWidth() + x] =
+                                image[(tile.getTop() + y * sampleSize) * WIDTH + tile.getLeft() + x * sampleSize];
+                    }
+                }
+            }
+        };
+    }
+
+    private static void assertPointsWithin(Result result, int left, int top, int right, int bottom) {
+        ResultPoint[] points = result.getResultPoints();
+        assertTrue(points.length > 0);
+        for (ResultPoint point : points) {
+            assertTrue(point.toString(), point.getX() >= left && point.getX() <= right);
+            assertTrue(point.toString(), point.getY() >= top && point.getY() <= bottom);
+        }
+    }
+
+    @Test
+    public void pointsOfAHorizontalCodeAreInImageCoordinates() throws Exception {
+        Result result = new TiledDecoder(hints(), null, MAX_TILE_PIXELS)
+                .decode(WIDTH, HEIGHT, source(image(2000, 300, false)));
+        assertNotNull(result);
+        assertEquals(CONTENT, result.getText());
+        assertPointsWithin(result, 2000, 300, 2000 + CODE_LENGTH, 300 + CODE_THICKNESS);
+    }
+
+    @Test
+    public void pointsOfAVerticalCodeAreInImageCoordinates() throws Exception {
+        Result result = new TiledDecoder(hints(), null, MAX_TILE_PIXELS)
+                .decode(WIDTH, HEIGHT, source(image(2000, 300, true)));
+        assertNotNull(result);
+        assertEquals(CONTENT, result.getText());
+        assertPointsWithin(result, 2000, 300, 2000 + CODE_THICKNESS, 300 + CODE_LENGTH);
+    }
+}
@@ -0,0 +1,75 @@
+package com.jeffmony.orcode.encode;
+
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BitMatrixRendererTest {
+
+    private static final int ON = 0xFF000000;
+    private static final int OFF = 0xFFFFFFFF;
+
+    /**
+     * A matrix whose rows are not a whole number of bytes, with set bits on both sides of every
+     * byte boundary.
+     */
+    private static BitMatrix matrix() {
+        BitMatrix matrix = new BitMatrix(13, 3);
+        matrix.set(0, 0);
+        matrix.set(7, 0);
+        matrix.set(8, 0);
+        matrix.set(12, 0);
+        matrix.setRegion(0, 2, 13, 1);
+        return matrix;
+    }
+
+    @Test
+    public void packedRowsStartOnAByteWithTheLeftmostPixelHighest() {
+        byte[] packed = BitMatrixRenderer.toPackedRows(matrix());
+        assertArrayEquals(new byte[]{
+                (byte) 0x81, (byte) 0x88,
+                0x00, 0x00,
+                (byte) 0xff, (byte) 0xf8,
+        }, packed);
+    }
+
+    @Test
+    public void packedRowsOfWholeBytes() {
+        BitMatrix matrix = new BitMatrix(16, 2);
+        matrix.set(1, 0);
+        matrix.set(15, 1);
+        assertArrayEquals(new byte[]{0x40, 0x00, 0x00, 0x01}, BitMatrixRenderer.toPackedRows(matrix));
+    }
+
+    @Test
+    public void renderMatchesTheMatrix() {
+        BitMatrix matrix = matrix();
+        int[] pixels = BitMatrixRenderer.render(matrix, ON, OFF);
+        assertEquals(matrix.getWidth() * matrix.getHeight(), pixels.length);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                assertEquals(x + "," + y, matrix.get(x, y) ? ON : OFF, pixels[y * matrix.getWidth() + x]);
+            }
+        }
+    }
+
+    @Test
+    public void bandsMatchTheWholeImage() {
+        // Taller than a band, with rows repeated across band boundaries.
+        final BitMatrix matrix = new BitMatrix(21, BitMatrixRenderer.BAND_ROWS * 2 + 5);
+        matrix.setRegion(3, BitMatrixRenderer.BAND_ROWS - 2, 9, 6);
+        matrix.setRegion(10, BitMatrixRenderer.BAND_ROWS * 2 - 1, 11, 4);
+        int[] expected = BitMatrixRenderer.render(matrix, ON, OFF);
+        final int[] actual = new int[expected.length];
+        BitMatrixRenderer.render(matrix, ON, OFF, new BitMatrixRenderer.PixelSink() {
+            @Override
+            public void setPixels(int[] pixels, int top, int rows) {
+                System.arraycopy(pixels, 0, actual, top * matrix.getWidth(), rows * matrix.getWidth());
+            }
+        });
+        assertArrayEquals(expected, actual);
+    }
+}
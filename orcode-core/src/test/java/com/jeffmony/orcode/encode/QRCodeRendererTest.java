@@ -0,0 +1,97 @@
+package com.jeffmony.orcode.encode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class QRCodeRendererTest {
+
+    private static final String CONTENT = "https://github.com/JeffMony/ORCodeDemo";
+    private static final int ON = 0xFF000000;
+    private static final int OFF = 0xFFFFFFFF;
+
+    /**
+     * Sizes that divide evenly, that don't, that are not square, and one too small for the code.
+     */
+    private static final int[][] SIZES = {{400, 400}, {333, 333}, {500, 300}, {10, 10}};
+
+    private static Map<EncodeHintType, Object> hints(int margin) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+        hints.put(EncodeHintType.MARGIN, margin);
+        return hints;
+    }
+
+    private static QRCode encode(Map<EncodeHintType, ?> hints) throws WriterException {
+        return Encoder.encode(CONTENT, ErrorCorrectionLevel.H, hints);
+    }
+
+    @Test
+    public void bitMatrixMatchesQRCodeWriter() throws WriterException {
+        for (int margin : new int[]{0, 1, QRCodeRenderer.QUIET_ZONE_SIZE}) {
+            Map<EncodeHintType, Object> hints = hints(margin);
+            QRCode code = encode(hints);
+            for (int[] size : SIZES) {
+                BitMatrix expected = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, size[0], size[1], hints);
+                BitMatrix actual = QRCodeRenderer.toBitMatrix(code, size[0], size[1], QRCodeRenderer.getQuietZone(hints));
+                assertEquals("margin " + margin + " size " + size[0] + "x" + size[1], expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void renderMatchesRenderedWriterMatrix() throws WriterException {
+        Map<EncodeHintType, Object> hints = hints(2);
+        QRCode code = encode(hints);
+        for (int[] size : SIZES) {
+            BitMatrix matrix = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, size[0], size[1], hints);
+            int[] expected = BitMatrixRenderer.render(matrix, ON, OFF);
+            assertArrayEquals(size[0] + "x" + size[1], expected, QRCodeRenderer.render(code, size[0], size[1], 2, ON, OFF));
+        }
+    }
+
+    @Test
+    public void bandsMatchTheWholeImage() throws WriterException {
+        QRCode code = encode(hints(QRCodeRenderer.QUIET_ZONE_SIZE));
+        final int width = 333;
+        final int height = 333;
+        int[] expected = QRCodeRenderer.render(code, width, height, QRCodeRenderer.QUIET_ZONE_SIZE, ON, OFF);
+        final int[] actual = new int[expected.length];
+        QRCodeRenderer.render(code, width, height, QRCodeRenderer.QUIET_ZONE_SIZE, ON, OFF, new BitMatrixRenderer.PixelSink() {
+            @Override
+            public void setPixels(int[] pixels, int top, int rows) {
+                System.arraycopy(pixels, 0, actual, top * width, rows * width);
+            }
+        });
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void outputGrowsWhenTheCodeDoesNotFit() throws WriterException {
+        QRCode code = encode(hints(QRCodeRenderer.QUIET_ZONE_SIZE));
+        int minimum = code.getMatrix().getWidth() + 2 * QRCodeRenderer.QUIET_ZONE_SIZE;
+        assertEquals(minimum, QRCodeRenderer.getOutputSize(code, 10, QRCodeRenderer.QUIET_ZONE_SIZE));
+        assertEquals(400, QRCodeRenderer.getOutputSize(code, 400, QRCodeRenderer.QUIET_ZONE_SIZE));
+        assertEquals(minimum * minimum, QRCodeRenderer.render(code, 10, 10, QRCodeRenderer.QUIET_ZONE_SIZE, ON, OFF).length);
+    }
+
+    @Test
+    public void quietZoneDefaultsWithoutMarginHint() {
+        assertEquals(QRCodeRenderer.QUIET_ZONE_SIZE, QRCodeRenderer.getQuietZone(null));
+        assertEquals(QRCodeRenderer.QUIET_ZONE_SIZE, QRCodeRenderer.getQuietZone(new EnumMap<EncodeHintType, Object>(EncodeHintType.class)));
+        assertEquals(1, QRCodeRenderer.getQuietZone(hints(1)));
+    }
+}
@@ -3,7 +3,6 @@ package com.jeffmony.orcode;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Point;
 import android.os.Bundle;
 import android.os.Handler;
@@ -17,16 +16,24 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 import com.jeffmony.orcode.camera.CameraManager;
+import com.jeffmony.orcode.decode.DecodeStrategyScheduler;
+import com.jeffmony.orcode.decode.DuplicateResultFilter;
+import com.jeffmony.orcode.decode.FrameQualityGate;
+import com.jeffmony.orcode.decode.RegionTracker;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CaptureHandler extends Handler implements ResultPointCallback {
 
     private static final String TAG = CaptureHandler.class.getSimpleName();
 
     private final OnCaptureListener mOnCaptureListener;
-    private final DecodeThread mDecodeThread;
+    private final DecodeWorkerPool mWorkerPool;
     private State mState;
     private final CameraManager mCameraManager;
     private final Activity mActivity;
@@ -48,6 +55,40 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
 
     private boolean mIsSupportLuminanceInvert;
 
+    private DecodeStrategyScheduler mDecodeStrategyScheduler = new DecodeStrategyScheduler();
+
+    /**
+     * 是否并行尝试多种解码策略
+     */
+    private boolean mIsParallelDecodeStrategy;
+
+    private ExecutorService mParallelDecodeExecutor;
+
+    /**
+     * 解码前判断帧是否清晰，为null时不判断
+     */
+    private FrameQualityGate mFrameQualityGate;
+
+    /**
+     * 跟踪条码所在区域，优先解码该区域，为null时不跟踪
+     */
+    private RegionTracker mRegionTracker;
+
+    /**
+     * 是否一帧识别多个码
+     */
+    private boolean mIsSupportMultiDecode;
+
+    /**
+     * 连续扫码时过滤最近已识别过的结果，为null时不过滤
+     */
+    private DuplicateResultFilter mDuplicateResultFilter;
+
+    /**
+     * 是否先解码缩小后的图像
+     */
+    private boolean mIsPyramidDecode;
+
     private enum State {
         PREVIEW,
         SUCCESS,
@@ -58,12 +99,14 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
                    Collection<BarcodeFormat> decodeFormats,
                    Map<DecodeHintType, Object> baseHints,
                    String characterSet,
-                   CameraManager cameraManager) {
+                   CameraManager cameraManager,
+                   int decodeWorkerCount,
+                   boolean pipelinedDecode) {
         this.mActivity = activity;
         this.mViewfinderView = viewfinderView;
         this.mOnCaptureListener = onCaptureListener;
-        mDecodeThread = new DecodeThread(activity,cameraManager,this, decodeFormats, baseHints, characterSet, this);
-        mDecodeThread.start();
+        mWorkerPool = new DecodeWorkerPool(activity, cameraManager, this, decodeWorkerCount, pipelinedDecode, decodeFormats, baseHints, characterSet, this);
+        mWorkerPool.start();
         mState = State.SUCCESS;
 
         // Start ourselves capturing previews and decoding.
@@ -77,26 +120,42 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
         if (message.what == R.id.restart_preview) {
             restartPreviewAndDecode();
 
+        } else if (message.what == R.id.decode) {
+            // Only reached with more than one worker: fan the frame out to an idle one.
+            if (mState == State.PREVIEW) {
+                mWorkerPool.dispatchFrame(message);
+            } else {
+                mWorkerPool.dropFrame((byte[]) message.obj);
+            }
+
         } else if (message.what == R.id.decode_succeeded) {
+            mWorkerPool.onWorkerIdle(message.arg1);
+            if (mState != State.PREVIEW) {
+                // The first successful worker already won.
+                return;
+            }
             mState = State.SUCCESS;
+            mWorkerPool.cancelInFlight();
             Bundle bundle = message.getData();
             Bitmap barcode = null;
             float scaleFactor = 1.0f;
             if (bundle != null) {
-                byte[] compressedBitmap = bundle.getByteArray(DecodeThread.BARCODE_BITMAP);
-                if (compressedBitmap != null) {
-                    barcode = BitmapFactory.decodeByteArray(compressedBitmap, 0, compressedBitmap.length, null);
-                    // Mutable copy:
-                    barcode = barcode.copy(Bitmap.Config.ARGB_8888, true);
-                }
+                // Already a mutable bitmap, rendered on the decode thread.
+                barcode = bundle.getParcelable(DecodeThread.BARCODE_BITMAP);
                 scaleFactor = bundle.getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
             }
-            mOnCaptureListener.onHandleDecode((Result) message.obj, barcode, scaleFactor);
+            if (message.obj instanceof Result[]) {
+                mOnCaptureListener.onHandleDecode((Result[]) message.obj, barcode, scaleFactor);
+            } else {
+                mOnCaptureListener.onHandleDecode((Result) message.obj, barcode, scaleFactor);
+            }
 
 
         } else if (message.what == R.id.decode_failed) {// We're decoding as fast as possible, so when one decode fails, start another.
-            mState = State.PREVIEW;
-            mCameraManager.requestPreviewFrame(mDecodeThread.getHandler(), R.id.decode);
+            mWorkerPool.onWorkerIdle(message.arg1);
+            if (mState == State.PREVIEW) {
+                mWorkerPool.requestFrame();
+            }
 
         }
     }
@@ -104,16 +163,17 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
     public void quitSynchronously() {
         mState = State.DONE;
         mCameraManager.stopPreview();
-        Message quit = Message.obtain(mDecodeThread.getHandler(), R.id.quit);
-        quit.sendToTarget();
-        try {
-            // Wait at most half a second; should be enough time, and onPause() will timeout quickly
-            mDecodeThread.join(100L);
-        } catch (InterruptedException e) {
-            // continue
+        mWorkerPool.cancelInFlight();
+        mWorkerPool.quitSynchronously();
+        synchronized (this) {
+            if (mParallelDecodeExecutor != null) {
+                mParallelDecodeExecutor.shutdownNow();
+                mParallelDecodeExecutor = null;
+            }
         }
 
         // Be absolutely sure we don't send any queued up messages
+        removeMessages(R.id.decode);
         removeMessages(R.id.decode_succeeded);
         removeMessages(R.id.decode_failed);
     }
@@ -121,7 +181,8 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
     public void restartPreviewAndDecode() {
         if (mState == State.SUCCESS) {
             mState = State.PREVIEW;
-            mCameraManager.requestPreviewFrame(mDecodeThread.getHandler(), R.id.decode);
+            mWorkerPool.cancelInFlight();
+            mWorkerPool.requestFrame();
             mViewfinderView.drawViewfinder();
         }
     }
@@ -204,4 +265,82 @@ public class CaptureHandler extends Handler implements ResultPointCallback {
     public void setSupportLuminanceInvert(boolean supportLuminanceInvert) {
         mIsSupportLuminanceInvert = supportLuminanceInvert;
     }
-}
+
+    public DecodeStrategyScheduler getDecodeStrategyScheduler() {
+        return mDecodeStrategyScheduler;
+    }
+
+    public void setDecodeStrategyScheduler(DecodeStrategyScheduler decodeStrategyScheduler) {
+        mDecodeStrategyScheduler = decodeStrategyScheduler;
+    }
+
+    public boolean isParallelDecodeStrategy() {
+        return mIsParallelDecodeStrategy;
+    }
+
+    public void setParallelDecodeStrategy(boolean parallelDecodeStrategy) {
+        mIsParallelDecodeStrategy = parallelDecodeStrategy;
+    }
+
+    /**
+     * The executor the decode strategies are raced on, shared by all decode workers and created on
+     * first use. One thread per strategy raced after the first pass, but no more than the cores
+     * left over beside the decode thread.
+     */
+    synchronized ExecutorService getParallelDecodeExecutor() {
+        if (mParallelDecodeExecutor == null) {
+            int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+            mParallelDecodeExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "DecodeStrategy-" + mCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mParallelDecodeExecutor;
+    }
+
+    public FrameQualityGate getFrameQualityGate() {
+        return mFrameQualityGate;
+    }
+
+    public void setFrameQualityGate(FrameQualityGate frameQualityGate) {
+        mFrameQualityGate = frameQualityGate;
+    }
+
+    public RegionTracker getRegionTracker() {
+        return mRegionTracker;
+    }
+
+    public void setRegionTracker(RegionTracker regionTracker) {
+        mRegionTracker = regionTracker;
+    }
+
+    public boolean isSupportMultiDecode() {
+        return mIsSupportMultiDecode;
+    }
+
+    public void setSupportMultiDecode(boolean supportMultiDecode) {
+        mIsSupportMultiDecode = supportMultiDecode;
+    }
+
+    public DuplicateResultFilter getDuplicateResultFilter() {
+        return mDuplicateResultFilter;
+    }
+
+    public void setDuplicateResultFilter(DuplicateResultFilter duplicateResultFilter) {
+        mDuplicateResultFilter = duplicateResultFilter;
+    }
+
+    public boolean isPyramidDecode() {
+        return mIsPyramidDecode;
+    }
+
+    public void setPyramidDecode(boolean pyramidDecode) {
+        mIsPyramidDecode = pyramidDecode;
+    }
+}
\ No newline at end of file
@@ -20,6 +20,10 @@ import com.google.zxing.DecodeHintType;
 import com.google.zxing.Result;
 import com.jeffmony.orcode.camera.CameraManager;
 import com.jeffmony.orcode.camera.FrontLightMode;
+import com.jeffmony.orcode.decode.DecodeStrategyScheduler;
+import com.jeffmony.orcode.decode.DuplicateResultFilter;
+import com.jeffmony.orcode.decode.FrameQualityGate;
+import com.jeffmony.orcode.decode.RegionTracker;
 import com.jeffmony.orcode.utils.LogUtils;
 
 import java.io.IOException;
@@ -96,6 +100,21 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
      */
     private boolean mIsSupportVerticalCode;
 
+    /**
+     * 是否一帧识别多个码
+     */
+    private boolean mIsSupportMultiDecode;
+
+    /**
+     * 连续扫码时过滤最近已识别过的结果，为null时表示不过滤
+     */
+    private DuplicateResultFilter mDuplicateResultFilter;
+
+    /**
+     * 是否先解码缩小后的图像
+     */
+    private boolean mIsPyramidDecode;
+
     /**
      * 是否返回扫码原图
      */
@@ -106,6 +125,41 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
      */
     private boolean mIsFullScreenScan;
 
+    /**
+     * 解码线程数，每个线程持有独立的解码器，默认1个
+     */
+    private int mDecodeWorkerCount = 1;
+
+    /**
+     * 是否复用预览帧缓冲区，避免每帧都重新分配内存，默认不复用
+     */
+    private boolean mIsRecyclePreviewBuffer;
+
+    /**
+     * 是否流水线解码，解码的同时相机继续输出预览帧，只解码最新的一帧，默认不开启
+     */
+    private boolean mIsPipelinedDecode;
+
+    /**
+     * 解码策略调度器，记录各解码策略最近的成功率和耗时
+     */
+    private final DecodeStrategyScheduler mDecodeStrategyScheduler = new DecodeStrategyScheduler();
+
+    /**
+     * 是否并行尝试多种解码策略，默认不开启
+     */
+    private boolean mIsParallelDecodeStrategy;
+
+    /**
+     * 解码前判断帧是否清晰，为null时表示不判断
+     */
+    private FrameQualityGate mFrameQualityGate;
+
+    /**
+     * 跟踪条码所在区域，为null时表示不跟踪
+     */
+    private RegionTracker mRegionTracker;
+
     /**
      * 识别区域比例，范围建议在0.625 ~ 1.0之间，默认0.9
      */
@@ -168,6 +222,7 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
      */
     public CaptureHelper(Activity activity, SurfaceView surfaceView, ViewfinderView viewfinderView, View ivTorch){
         this.mActivity = activity;
+        mDecodeStrategyScheduler.setAdaptive(false);
         this.mViewfinderView = viewfinderView;
         this.mIvTorch = ivTorch;
         mSurfaceHolder = surfaceView.getHolder();
@@ -191,6 +246,13 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
                 mBeepManager.playBeepSoundAndVibrate();
                 onResult(result,barcode,scaleFactor);
             }
+
+            @Override
+            public void onHandleDecode(Result[] results, Bitmap barcode, float scaleFactor) {
+                mInactivityTimer.onActivity();
+                mBeepManager.playBeepSoundAndVibrate();
+                onResult(results,barcode,scaleFactor);
+            }
         };
 
         //设置是否播放音效和震动
@@ -282,6 +344,7 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
         mCameraManager.setFramingRectRatio(mFramingRectRatio);
         mCameraManager.setFramingRectVerticalOffset(mFramingRectVerticalOffset);
         mCameraManager.setFramingRectHorizontalOffset(mFramingRectHorizontalOffset);
+        mCameraManager.setPreviewBufferCount(getPreviewBufferCount());
         if(mIvTorch !=null && mHasCameraFlash){
             mIvTorch.setOnClickListener(new View.OnClickListener() {
                 @Override
@@ -332,11 +395,18 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
             mCameraManager.openDriver(surfaceHolder);
             // Creating the handler starts the preview, which can also throw a RuntimeException.
             if (mCaptureHandler == null) {
-                mCaptureHandler = new CaptureHandler(mActivity, mViewfinderView, mOnCaptureListener, mDecodeFormats, mDecodeHints, mCharacterSet, mCameraManager);
+                mCaptureHandler = new CaptureHandler(mActivity, mViewfinderView, mOnCaptureListener, mDecodeFormats, mDecodeHints, mCharacterSet, mCameraManager, mDecodeWorkerCount, mIsPipelinedDecode);
                 mCaptureHandler.setSupportVerticalCode(mIsSupportVerticalCode);
+                mCaptureHandler.setSupportMultiDecode(mIsSupportMultiDecode);
+                mCaptureHandler.setDuplicateResultFilter(getActiveDuplicateResultFilter());
+                mCaptureHandler.setPyramidDecode(mIsPyramidDecode);
                 mCaptureHandler.setReturnBitmap(mIsReturnBitmap);
                 mCaptureHandler.setSupportAutoZoom(mIsSupportAutoZoom);
                 mCaptureHandler.setSupportLuminanceInvert(mIsSupportLuminanceInvert);
+                mCaptureHandler.setDecodeStrategyScheduler(mDecodeStrategyScheduler);
+                mCaptureHandler.setParallelDecodeStrategy(mIsParallelDecodeStrategy);
+                mCaptureHandler.setFrameQualityGate(mFrameQualityGate);
+                mCaptureHandler.setRegionTracker(mRegionTracker);
             }
         } catch (IOException ioe) {
             LogUtils.w(TAG, "initCamera failed", ioe);
@@ -547,14 +617,101 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
     }
 
 
+    /**
+     * 多码识别模式下接收扫码结果
+     * @param results
+     * @param barcode
+     * @param scaleFactor
+     */
+    public void onResult(Result[] results, Bitmap barcode, float scaleFactor){
+        onResult(results);
+    }
+
+    /**
+     * 多码识别模式下接收一帧中识别到的所有结果，逻辑同{@link #onResult(Result)}；
+     * 不拦截时返回的{@link Intents.Scan#RESULT}为第一个结果，{@link Intents.Scan#RESULTS}为所有结果
+     * @param results 扫码结果
+     */
+    public void onResult(final Result[] results){
+        if(mIsContinuousScan){
+            if(mOnCaptureCallback!=null){
+                mOnCaptureCallback.onResultCallback(results);
+            }
+            if(mIsAutoRestartPreviewAndDecode){
+                restartPreviewAndDecode();
+            }
+            return;
+        }
+
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                //如果设置了回调，并且onCallback返回为true，则表示拦截
+                if(mOnCaptureCallback!=null && mOnCaptureCallback.onResultCallback(results)){
+                    return;
+                }
+                String[] texts = new String[results.length];
+                for(int i = 0; i < results.length; i++){
+                    texts[i] = results[i].getText();
+                }
+                Intent intent = new Intent();
+                intent.putExtra(Intents.Scan.RESULT,texts[0]);
+                intent.putExtra(Intents.Scan.RESULTS,texts);
+                mActivity.setResult(Activity.RESULT_OK,intent);
+                mActivity.finish();
+            }
+        };
+        if(mIsPlayBeep){//如果播放音效，则稍微延迟一点，给予播放音效时间
+            mCaptureHandler.postDelayed(runnable, 100);
+            return;
+        }
+        runnable.run();
+    }
+
     /**
      * 设置是否连续扫码，如果想支持连续扫码，则将此方法返回{@code true}并重写{@link #onResult(Result)}
      */
     public CaptureHelper continuousScan(boolean isContinuousScan){
         this.mIsContinuousScan = isContinuousScan;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setDuplicateResultFilter(getActiveDuplicateResultFilter());
+        }
+        return this;
+    }
+
+    /**
+     * 设置连续扫码时是否过滤重复的结果，同一个码（格式和内容都相同）在移出画面{@link DuplicateResultFilter#DEFAULT_TTL_MILLIS}毫秒之内
+     * 不会重复回调，也不会重复播放音效，只在{@link #continuousScan(boolean)}为{@code true}时生效
+     * @param duplicateResultFilter 默认为false
+     * @return
+     */
+    public CaptureHelper duplicateResultFilter(boolean duplicateResultFilter) {
+        return duplicateResultFilter(duplicateResultFilter ? new DuplicateResultFilter() : null);
+    }
+
+    /**
+     * 设置连续扫码时过滤重复的结果，同一个码（格式和内容都相同）在移出画面ttlMillis毫秒之内不会重复回调，
+     * 也不会重复播放音效，只在{@link #continuousScan(boolean)}为{@code true}时生效
+     * @param ttlMillis 同一个码最后一次识别到之后多长时间内视为重复
+     * @param capacity 最多记录多少个码，超出时先丢弃最久未识别到的
+     * @return
+     */
+    public CaptureHelper duplicateResultFilter(long ttlMillis, int capacity) {
+        return duplicateResultFilter(new DuplicateResultFilter(ttlMillis, capacity));
+    }
+
+    private CaptureHelper duplicateResultFilter(DuplicateResultFilter duplicateResultFilter) {
+        mDuplicateResultFilter = duplicateResultFilter;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setDuplicateResultFilter(getActiveDuplicateResultFilter());
+        }
         return this;
     }
 
+    private DuplicateResultFilter getActiveDuplicateResultFilter() {
+        return mIsContinuousScan ? mDuplicateResultFilter : null;
+    }
+
 
     /**
      * 设置是否自动重启扫码和解码器，当支持连扫时才起作用。
@@ -741,6 +898,87 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
         return this;
     }
 
+    /**
+     * 设置是否根据最近的识别情况自动调整解码策略的顺序。开启后会优先尝试最近成功率高、耗时短的策略，
+     * 并跳过长期无效的策略，例如低对比度的条码会优先使用GlobalHistogramBinarizer
+     * @param adaptiveDecodeStrategy 默认为false，按固定顺序尝试
+     * @return
+     */
+    public CaptureHelper adaptiveDecodeStrategy(boolean adaptiveDecodeStrategy) {
+        mDecodeStrategyScheduler.setAdaptive(adaptiveDecodeStrategy);
+        return this;
+    }
+
+    /**
+     * 设置是否并行尝试多种解码策略。开启后当第一次解码失败时，反色、GlobalHistogramBinarizer、垂直条码等
+     * 解码策略会在多个线程上同时进行，任意一个成功即返回，其余的被取消，多核设备上可降低单帧解码的最长耗时
+     * @param parallelDecodeStrategy 默认为false
+     * @return
+     */
+    public CaptureHelper parallelDecodeStrategy(boolean parallelDecodeStrategy) {
+        mIsParallelDecodeStrategy = parallelDecodeStrategy;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setParallelDecodeStrategy(mIsParallelDecodeStrategy);
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否在解码前判断帧是否清晰。开启后对焦过程中或手抖产生的模糊帧会直接跳过，不再进行解码，
+     * 同时连续出现模糊帧时会立即触发对焦，画面清晰时则推迟定时对焦，可降低连续扫码时的CPU占用和耗电
+     * @param frameQualityGate 默认为false
+     * @return
+     */
+    public CaptureHelper frameQualityGate(boolean frameQualityGate) {
+        mFrameQualityGate = frameQualityGate ? new FrameQualityGate() : null;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setFrameQualityGate(mFrameQualityGate);
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否一帧识别多个码，如同一个标签上的二维码和多个条形码。开启后一帧中识别到的所有码会在一次回调中返回，
+     * 见{@link #onResult(Result[])}和{@link OnCaptureCallback#onResultCallback(Result[])}，同一位置的同一个码只返回一次
+     * @param supportMultiDecode 默认为false，开启后不再识别垂直的条形码，也不会自动缩放和跟踪条码所在区域
+     * @return
+     */
+    public CaptureHelper supportMultiDecode(boolean supportMultiDecode) {
+        mIsSupportMultiDecode = supportMultiDecode;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setSupportMultiDecode(mIsSupportMultiDecode);
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否先解码缩小后的图像。开启后识别区域较大时（如全屏扫码且预览尺寸较大）会先解码缩小2倍或4倍的图像，
+     * 只有在其中发现了定位点却没有识别成功时才解码原图，近距离的大码识别会快很多
+     * @param pyramidDecode 默认为false
+     * @return
+     */
+    public CaptureHelper pyramidDecode(boolean pyramidDecode) {
+        mIsPyramidDecode = pyramidDecode;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setPyramidDecode(mIsPyramidDecode);
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否跟踪条码所在区域。开启后会根据之前识别到的条码位置及定位点预测条码在后续帧中的位置，
+     * 先只解码该区域，失败后再解码整个识别区域，全屏扫码时可大幅减少需要解码的像素
+     * @param regionTracking 默认为false
+     * @return
+     */
+    public CaptureHelper regionTracking(boolean regionTracking) {
+        mRegionTracker = regionTracking ? new RegionTracker() : null;
+        if(mCaptureHandler!=null){
+            mCaptureHandler.setRegionTracker(mRegionTracker);
+        }
+        return this;
+    }
+
     /**
      * 设置是否支持全屏扫码识别
      * @param fullScreenScan 默认为false
@@ -754,6 +992,54 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
         return this;
     }
 
+    /**
+     * 设置解码线程数，多核设备上可同时解码多帧预览数据，最先成功的结果生效，其余帧的解码会被丢弃。
+     * 需在相机初始化前设置，即在{@link #onResume()}之前调用
+     * @param decodeWorkerCount 默认为1，建议不超过{@link Runtime#availableProcessors()}
+     * @return
+     */
+    public CaptureHelper decodeWorkerCount(int decodeWorkerCount) {
+        this.mDecodeWorkerCount = Math.max(1, decodeWorkerCount);
+        if(mCameraManager!=null){
+            mCameraManager.setPreviewBufferCount(getPreviewBufferCount());
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否复用预览帧缓冲区。开启后相机将预览数据写入固定的几个缓冲区，解码完成后再归还给相机，
+     * 连续扫码时不再为每一帧分配内存，减少GC。需在{@link #onResume()}之前调用
+     * @param recyclePreviewBuffer 默认为false
+     * @return
+     */
+    public CaptureHelper recyclePreviewBuffer(boolean recyclePreviewBuffer) {
+        this.mIsRecyclePreviewBuffer = recyclePreviewBuffer;
+        if(mCameraManager!=null){
+            mCameraManager.setPreviewBufferCount(getPreviewBufferCount());
+        }
+        return this;
+    }
+
+    /**
+     * 设置是否流水线解码。开启后相机持续输出预览帧，与解码同时进行；解码线程空闲时直接取最新的一帧，
+     * 来不及解码的旧帧直接丢弃，每帧不再经过主线程中转。建议配合{@link #recyclePreviewBuffer(boolean)}使用，
+     * 需在{@link #onResume()}之前调用
+     * @param pipelinedDecode 默认为false
+     * @return
+     */
+    public CaptureHelper pipelinedDecode(boolean pipelinedDecode) {
+        this.mIsPipelinedDecode = pipelinedDecode;
+        return this;
+    }
+
+    /**
+     * 每个解码线程各占一个缓冲区，另外留两个给相机轮流写入
+     * @return
+     */
+    private int getPreviewBufferCount(){
+        return mIsRecyclePreviewBuffer ? mDecodeWorkerCount + 2 : 0;
+    }
+
     /**
      * 设置识别区域比例，范围建议在0.625 ~ 1.0之间。非全屏识别时才有效
      * 0.625 即与默认推荐显示区域一致，1.0表示与宽度一致
@@ -823,6 +1109,14 @@ public class CaptureHelper implements CaptureLifecycle,CaptureTouchEvent, Captur
         return mBeepManager;
     }
 
+    /**
+     * {@link DecodeStrategyScheduler}，可通过{@link DecodeStrategyScheduler#getStatistics()}查看各解码策略的统计
+     * @return {@link #mDecodeStrategyScheduler}
+     */
+    public DecodeStrategyScheduler getDecodeStrategyScheduler() {
+        return mDecodeStrategyScheduler;
+    }
+
     /**
      * {@link AmbientLightManager}
      * @return {@link #mAmbientLightManager}
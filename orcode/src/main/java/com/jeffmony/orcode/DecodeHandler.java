@@ -28,19 +28,27 @@ import android.view.Display;
 import android.view.WindowManager;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
+import com.google.zxing.LuminanceSource;
 import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
-import com.google.zxing.common.GlobalHistogramBinarizer;
-import com.google.zxing.common.HybridBinarizer;
 import com.jeffmony.orcode.camera.CameraManager;
-
-import java.io.ByteArrayOutputStream;
+import com.jeffmony.orcode.decode.CodeDecoder;
+import com.jeffmony.orcode.decode.DecodeStrategy;
+import com.jeffmony.orcode.decode.FrameDecoder;
+import com.jeffmony.orcode.decode.FrameQualityGate;
+import com.jeffmony.orcode.decode.LuminancePyramid;
+import com.jeffmony.orcode.decode.RotatedPlanarYUVLuminanceSource;
+
+import java.util.EnumSet;
 import java.util.Map;
 
+/**
+ * Hands each preview frame to a {@link FrameDecoder} and reports what it found to the
+ * {@link CaptureHandler}; building the sources, zooming and the thumbnail are the only parts that
+ * need the device.
+ */
 final class DecodeHandler extends Handler {
 
     private static final String TAG = DecodeHandler.class.getSimpleName();
@@ -48,17 +56,59 @@ final class DecodeHandler extends Handler {
     private final Context mContext;
     private final CameraManager mCameraManager;
     private final CaptureHandler mHandler;
-    private final MultiFormatReader mMultiFormatReader;
+    private final DecodeWorkerPool mWorkerPool;
+    private final int mWorkerIndex;
+    private final FrameDecoder mFrameDecoder;
     private boolean mRunning = true;
 
     private long mLastZoomTime;
 
-    DecodeHandler(Context context, CameraManager cameraManager, CaptureHandler handler, Map<DecodeHintType, Object> hints) {
-        mMultiFormatReader = new MultiFormatReader();
-        mMultiFormatReader.setHints(hints);
+    /**
+     * Crop-sized scratch array reused by rotated sources from one frame to the next.
+     */
+    private byte[] mRotatedMatrix;
+
+    private final EnumSet<DecodeStrategy> mEnabledStrategies = EnumSet.noneOf(DecodeStrategy.class);
+    private final LuminancePyramid mPyramid = new LuminancePyramid();
+
+    /**
+     * The frame being decoded, for {@link #mFrame}.
+     */
+    private byte[] mFrameData;
+    private int mFrameWidth;
+    private int mFrameHeight;
+    private boolean mFrameScreenPortrait;
+
+    private final FrameDecoder.Frame mFrame = new FrameDecoder.Frame() {
+        @Override
+        public LuminanceSource getSource() {
+            return buildPlanarYUVLuminanceSource(mFrameData, mFrameWidth, mFrameHeight, mFrameScreenPortrait);
+        }
+
+        @Override
+        public LuminanceSource getRotatedSource() {
+            return buildPlanarYUVLuminanceSource(mFrameData, mFrameWidth, mFrameHeight, !mFrameScreenPortrait);
+        }
+    };
+
+    /**
+     * Another worker already won, or decoding was restarted while this frame was in flight.
+     */
+    private final CodeDecoder.Cancellation mStaleCheck = new CodeDecoder.Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return mWorkerPool.isStale(mWorkerIndex);
+        }
+    };
+
+    DecodeHandler(Context context, CameraManager cameraManager, CaptureHandler handler,
+                  DecodeWorkerPool workerPool, int workerIndex, Map<DecodeHintType, Object> hints) {
+        mFrameDecoder = new FrameDecoder(hints);
         this.mContext = context;
         this.mCameraManager = cameraManager;
         this.mHandler = handler;
+        this.mWorkerPool = workerPool;
+        this.mWorkerIndex = workerIndex;
     }
 
     @Override
@@ -68,6 +118,11 @@ final class DecodeHandler extends Handler {
         }
         if (message.what == R.id.decode) {
             decode((byte[]) message.obj, message.arg1, message.arg2,isScreenPortrait(), mHandler.isSupportVerticalCode());
+            // Nothing refers to the frame any more, let the camera fill it again.
+            mCameraManager.releasePreviewBuffer((byte[]) message.obj);
+            if (mWorkerPool.isPipelined()) {
+                mWorkerPool.onWorkerDone(mWorkerIndex);
+            }
 
         } else if (message.what == R.id.quit) {
             mRunning = false;
@@ -94,60 +149,64 @@ final class DecodeHandler extends Handler {
      */
     private void decode(byte[] data, int width, int height,boolean isScreenPortrait,boolean isSupportVerticalCode) {
         long start = System.currentTimeMillis();
-        Result rawResult = null;
-        PlanarYUVLuminanceSource source = buildPlanarYUVLuminanceSource(data,width,height,isScreenPortrait);
-
-        if (source != null) {
-
-            boolean isReDecode;
-            try {
-                BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                rawResult = mMultiFormatReader.decodeWithState(bitmap);
-                isReDecode = false;
-            } catch (Exception e) {
-                isReDecode = true;
-            }
 
-            if(isReDecode && mHandler.isSupportLuminanceInvert()){
-                try {
-                    BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source.invert()));
-                    rawResult = mMultiFormatReader.decodeWithState(bitmap);
-                    isReDecode = false;
-                } catch (Exception e) {
-                    isReDecode = true;
-                }
-            }
-
-            if(isReDecode){
-                try{
-                    BinaryBitmap bitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                    rawResult = mMultiFormatReader.decodeWithState(bitmap);
-                    isReDecode = false;
-                }catch (Exception e){
-                    isReDecode = true;
-                }
-            }
-
-            if(isReDecode && isSupportVerticalCode){
-                source = buildPlanarYUVLuminanceSource(data,width,height,!isScreenPortrait);
-                if(source!=null){
-                    try{
-                        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                        rawResult = mMultiFormatReader.decodeWithState(bitmap);
-                    }catch (Exception e){
-
-                    }
-                }
+        mEnabledStrategies.clear();
+        mEnabledStrategies.add(DecodeStrategy.HYBRID);
+        if(mHandler.isSupportLuminanceInvert()){
+            mEnabledStrategies.add(DecodeStrategy.HYBRID_INVERTED);
+        }
+        mEnabledStrategies.add(DecodeStrategy.GLOBAL_HISTOGRAM);
+        if(isSupportVerticalCode){
+            mEnabledStrategies.add(DecodeStrategy.ROTATED);
+        }
+        FrameQualityGate gate = mHandler.getFrameQualityGate();
+        boolean multiDecode = mHandler.isSupportMultiDecode();
+        mFrameDecoder.setStrategies(mEnabledStrategies)
+                .setScheduler(mHandler.getDecodeStrategyScheduler())
+                .setQualityGate(gate)
+                .setRegionTracker(mHandler.getRegionTracker())
+                .setPyramid(mHandler.isPyramidDecode() ? mPyramid : null)
+                .setMultiDecode(multiDecode)
+                .setDuplicateResultFilter(mHandler.getDuplicateResultFilter())
+                .setParallelExecutor(mHandler.isParallelDecodeStrategy() ? mHandler.getParallelDecodeExecutor() : null);
+
+        mFrameData = data;
+        mFrameWidth = width;
+        mFrameHeight = height;
+        mFrameScreenPortrait = isScreenPortrait;
+        FrameDecoder.Outcome outcome;
+        try {
+            outcome = mFrameDecoder.decode(mFrame, mStaleCheck);
+        } finally {
+            mFrameData = null;
+        }
+        // The rotated pass decodes another source, which the thumbnail should show.
+        LuminanceSource source = outcome.getSource();
+        if (source != null && gate != null) {
+            mCameraManager.onFrameSharpness(outcome.isSharp());
+        }
 
+        if (multiDecode && outcome.getResults().length > 0) {
+            Result[] rawResults = outcome.getResults();
+            long end = System.currentTimeMillis();
+            Log.d(TAG, "Found " + rawResults.length + " barcodes in " + (end - start) + " ms");
+            mWorkerPool.onResultFound();
+            Message message = Message.obtain(mHandler, R.id.decode_succeeded, mWorkerIndex, 0, rawResults);
+            if(mHandler.isReturnBitmap()){
+                Bundle bundle = new Bundle();
+                bundleThumbnail(source, bundle);
+                message.setData(bundle);
             }
-
-            mMultiFormatReader.reset();
+            message.sendToTarget();
+            return;
         }
 
+        Result rawResult = multiDecode ? null : outcome.getResult();
         if (rawResult != null) {
             // Don't log the barcode contents for security.
             long end = System.currentTimeMillis();
             Log.d(TAG, "Found barcode in " + (end - start) + " ms");
+            mWorkerPool.onResultFound();
 
             BarcodeFormat barcodeFormat = rawResult.getBarcodeFormat();
             if(mHandler!=null && mHandler.isSupportAutoZoom() && barcodeFormat == BarcodeFormat.QR_CODE){
@@ -161,6 +220,7 @@ final class DecodeHandler extends Handler {
                     if(handleAutoZoom(maxDistance,width)){
                         Message message = Message.obtain();
                         message.what = R.id.decode_succeeded;
+                        message.arg1 = mWorkerIndex;
                         message.obj = rawResult;
                         if(mHandler.isReturnBitmap()){
                             Bundle bundle = new Bundle();
@@ -175,7 +235,7 @@ final class DecodeHandler extends Handler {
             }
 
             if (mHandler != null) {
-                Message message = Message.obtain(mHandler, R.id.decode_succeeded, rawResult);
+                Message message = Message.obtain(mHandler, R.id.decode_succeeded, mWorkerIndex, 0, rawResult);
                 if(mHandler.isReturnBitmap()){
                     Bundle bundle = new Bundle();
                     bundleThumbnail(source, bundle);
@@ -183,40 +243,49 @@ final class DecodeHandler extends Handler {
                 }
                 message.sendToTarget();
             }
-        } else {
+        } else if (!mWorkerPool.isPipelined()) {
             if (mHandler != null) {
-                Message message = Message.obtain(mHandler, R.id.decode_failed);
+                Message message = Message.obtain(mHandler, R.id.decode_failed, mWorkerIndex, 0);
                 message.sendToTarget();
             }
         }
     }
 
-    private PlanarYUVLuminanceSource buildPlanarYUVLuminanceSource(byte[] data, int width, int height,boolean isRotate){
-        PlanarYUVLuminanceSource source;
+    private LuminanceSource buildPlanarYUVLuminanceSource(byte[] data, int width, int height,boolean isRotate){
+        LuminanceSource source;
         if(isRotate){
-            byte[] rotatedData = new byte[data.length];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++)
-                    rotatedData[x * height + height - y - 1] = data[x + y * width];
+            // Reads the rotated crop straight out of the frame instead of rotating the whole frame.
+            RotatedPlanarYUVLuminanceSource rotatedSource = mCameraManager.buildRotatedLuminanceSource(data, width, height, mRotatedMatrix);
+            if(rotatedSource != null){
+                mRotatedMatrix = rotatedSource.getMatrixBuffer();
             }
-            int tmp = width;
-            width = height;
-            height = tmp;
-            source = mCameraManager.buildLuminanceSource(rotatedData, width, height);
+            source = rotatedSource;
         }else{
             source = mCameraManager.buildLuminanceSource(data, width, height);
         }
         return source;
     }
 
-    private static void bundleThumbnail(PlanarYUVLuminanceSource source, Bundle bundle) {
-        int[] pixels = source.renderThumbnail();
-        int width = source.getThumbnailWidth();
-        int height = source.getThumbnailHeight();
-        Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
-        bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
+    private static void bundleThumbnail(LuminanceSource source, Bundle bundle) {
+        int[] pixels;
+        int width;
+        int height;
+        if(source instanceof RotatedPlanarYUVLuminanceSource){
+            RotatedPlanarYUVLuminanceSource rotatedSource = (RotatedPlanarYUVLuminanceSource) source;
+            pixels = rotatedSource.renderThumbnail();
+            width = rotatedSource.getThumbnailWidth();
+            height = rotatedSource.getThumbnailHeight();
+        }else{
+            PlanarYUVLuminanceSource planarSource = (PlanarYUVLuminanceSource) source;
+            pixels = planarSource.renderThumbnail();
+            width = planarSource.getThumbnailWidth();
+            height = planarSource.getThumbnailHeight();
+        }
+        // Handed over as is: a Bundle sent within the process is never parcelled, so the listener
+        // gets this very bitmap without any encoding or work on the main thread.
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        bundle.putParcelable(DecodeThread.BARCODE_BITMAP, bitmap);
         bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width / source.getWidth());
     }
 
@@ -246,5 +315,4 @@ final class DecodeHandler extends Handler {
 
         return false;
     }
-
-}
\ No newline at end of file
+}
@@ -49,10 +49,14 @@ final class DecodeThread extends Thread {
     private final Map<DecodeHintType, Object> mHints;
     private Handler mHandler;
     private CaptureHandler mCaptureHandler;
+    private final DecodeWorkerPool mWorkerPool;
+    private final int mWorkerIndex;
     private final CountDownLatch mHandlerInitLatch;
 
     DecodeThread(Context context, CameraManager cameraManager,
                  CaptureHandler captureHandler,
+                 DecodeWorkerPool workerPool,
+                 int workerIndex,
                  Collection<BarcodeFormat> decodeFormats,
                  Map<DecodeHintType, Object> baseHints,
                  String characterSet,
@@ -60,6 +64,9 @@ final class DecodeThread extends Thread {
         this.mContext = context;
         this.mCameraManager = cameraManager;
         this.mCaptureHandler = captureHandler;
+        this.mWorkerPool = workerPool;
+        this.mWorkerIndex = workerIndex;
+        setName("DecodeThread-" + workerIndex);
         mHandlerInitLatch = new CountDownLatch(1);
 
         mHints = new EnumMap<>(DecodeHintType.class);
@@ -111,7 +118,7 @@ final class DecodeThread extends Thread {
     @Override
     public void run() {
         Looper.prepare();
-        mHandler = new DecodeHandler(mContext, mCameraManager, mCaptureHandler, mHints);
+        mHandler = new DecodeHandler(mContext, mCameraManager, mCaptureHandler, mWorkerPool, mWorkerIndex, mHints);
         mHandlerInitLatch.countDown();
         Looper.loop();
     }
@@ -0,0 +1,259 @@
+package com.jeffmony.orcode;
+
+import android.content.Context;
+import android.os.Message;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+import com.jeffmony.orcode.camera.CameraManager;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of {@link DecodeThread} workers, each owning its own reader. Preview frames are
+ * handed to whichever worker is idle and stamped with an increasing sequence number, so that the
+ * first successful result wins and every frame still in flight at that moment can be dropped.
+ *
+ * In the default mode a frame is requested from the camera only once a worker has reported back
+ * to the {@link CaptureHandler}. In pipelined mode the camera streams frames through
+ * {@link #onPreviewFrame(byte[], int, int)} while the workers decode, idle workers pick up the
+ * newest frame directly and older frames nobody picked up are dropped rather than queued.
+ */
+final class DecodeWorkerPool implements CameraManager.OnPreviewFrameListener {
+
+    private final CameraManager mCameraManager;
+    private final CaptureHandler mCaptureHandler;
+    private final DecodeThread[] mWorkers;
+    private final ArrayDeque<Integer> mIdleWorkers;
+    private final boolean mPipelined;
+    /**
+     * Sequence number of the frame each worker is currently decoding.
+     */
+    private final AtomicLongArray mWorkerSequences;
+    private long mLastSequence;
+    /**
+     * Frames with a sequence number up to and including this value have been cancelled.
+     */
+    private volatile long mCancelledSequence;
+    /**
+     * Whether a preview frame has been requested from the camera and not delivered yet.
+     */
+    private boolean mFrameRequested;
+    /**
+     * Pipelined mode only: whether streamed frames should be decoded, and the newest frame that
+     * arrived while every worker was busy.
+     */
+    private boolean mStreaming;
+    private byte[] mPendingFrame;
+    private int mPendingWidth;
+    private int mPendingHeight;
+
+    DecodeWorkerPool(Context context, CameraManager cameraManager,
+                     CaptureHandler captureHandler,
+                     int workerCount,
+                     boolean pipelined,
+                     Collection<BarcodeFormat> decodeFormats,
+                     Map<DecodeHintType, Object> baseHints,
+                     String characterSet,
+                     ResultPointCallback resultPointCallback) {
+        this.mCameraManager = cameraManager;
+        this.mCaptureHandler = captureHandler;
+        this.mPipelined = pipelined;
+        int count = Math.max(1, workerCount);
+        mWorkers = new DecodeThread[count];
+        mIdleWorkers = new ArrayDeque<>(count);
+        mWorkerSequences = new AtomicLongArray(count);
+        for (int i = 0; i < count; i++) {
+            mWorkers[i] = new DecodeThread(context, cameraManager, captureHandler, this, i,
+                    decodeFormats, baseHints, characterSet, resultPointCallback);
+            mIdleWorkers.add(i);
+        }
+    }
+
+    void start() {
+        for (DecodeThread worker : mWorkers) {
+            worker.start();
+        }
+    }
+
+    boolean isPipelined() {
+        return mPipelined;
+    }
+
+    /**
+     * Starts decoding again. In the default mode this requests the next preview frame if some
+     * worker is idle and no request is pending: with a single worker the frame goes straight to
+     * it, otherwise it is delivered to the {@link CaptureHandler}, which fans it out through
+     * {@link #dispatchFrame(Message)}. In pipelined mode it (re)starts the frame stream.
+     */
+    synchronized void requestFrame() {
+        if (mPipelined) {
+            if (!mStreaming) {
+                mStreaming = true;
+                mCameraManager.startPreviewFrames(this);
+            }
+            return;
+        }
+        if (mFrameRequested || mIdleWorkers.isEmpty()) {
+            return;
+        }
+        mFrameRequested = true;
+        if (mWorkers.length == 1) {
+            int index = bindIdleWorker();
+            mCameraManager.requestPreviewFrame(mWorkers[index].getHandler(), R.id.decode);
+        } else {
+            mCameraManager.requestPreviewFrame(mCaptureHandler, R.id.decode);
+        }
+    }
+
+    /**
+     * Hands a preview frame delivered to the {@link CaptureHandler} to the next idle worker and
+     * asks the camera for another one while idle workers remain.
+     */
+    synchronized void dispatchFrame(Message message) {
+        mFrameRequested = false;
+        if (mIdleWorkers.isEmpty()) {
+            mCameraManager.releasePreviewBuffer((byte[]) message.obj);
+            return;
+        }
+        sendFrame(bindIdleWorker(), (byte[]) message.obj, message.arg1, message.arg2);
+        requestFrame();
+    }
+
+    /**
+     * Gives back a preview frame delivered to the {@link CaptureHandler} after decoding stopped,
+     * so that the request it answered no longer counts as pending and the next
+     * {@link #requestFrame()} asks the camera again.
+     */
+    synchronized void dropFrame(byte[] data) {
+        mFrameRequested = false;
+        mCameraManager.releasePreviewBuffer(data);
+    }
+
+    /**
+     * Pipelined mode: called on the camera callback thread for every preview frame.
+     */
+    @Override
+    public synchronized void onPreviewFrame(byte[] data, int width, int height) {
+        if (!mStreaming) {
+            mCameraManager.releasePreviewBuffer(data);
+            return;
+        }
+        if (!mIdleWorkers.isEmpty()) {
+            sendFrame(bindIdleWorker(), data, width, height);
+            return;
+        }
+        // Latest frame wins: whatever was waiting is already older than this one.
+        if (mPendingFrame != null) {
+            mCameraManager.releasePreviewBuffer(mPendingFrame);
+        }
+        mPendingFrame = data;
+        mPendingWidth = width;
+        mPendingHeight = height;
+    }
+
+    /**
+     * Pipelined mode: called on the worker's own thread once it is done with a frame, so that it
+     * can continue with the newest pending frame without going through the main thread.
+     */
+    synchronized void onWorkerDone(int index) {
+        if (mStreaming && mPendingFrame != null) {
+            byte[] frame = mPendingFrame;
+            mPendingFrame = null;
+            mWorkerSequences.set(index, ++mLastSequence);
+            sendFrame(index, frame, mPendingWidth, mPendingHeight);
+        } else if (!mIdleWorkers.contains(index)) {
+            mIdleWorkers.add(index);
+        }
+    }
+
+    /**
+     * Pipelined mode: stops the stream as soon as a worker found a result, before it is posted to
+     * the main thread, so no further frames get decoded for nothing.
+     */
+    synchronized void onResultFound() {
+        if (mPipelined) {
+            stopStreaming();
+        }
+    }
+
+    private void stopStreaming() {
+        mStreaming = false;
+        mCameraManager.stopPreviewFrames();
+        if (mPendingFrame != null) {
+            mCameraManager.releasePreviewBuffer(mPendingFrame);
+            mPendingFrame = null;
+        }
+        cancelInFlight();
+    }
+
+    private void sendFrame(int index, byte[] data, int width, int height) {
+        Message.obtain(mWorkers[index].getHandler(), R.id.decode, width, height, data).sendToTarget();
+    }
+
+    private int bindIdleWorker() {
+        int index = mIdleWorkers.poll();
+        mWorkerSequences.set(index, ++mLastSequence);
+        return index;
+    }
+
+    /**
+     * Marks a worker as ready for another frame, once it has posted its result back. Pipelined
+     * workers report back through {@link #onWorkerDone(int)} instead.
+     */
+    synchronized void onWorkerIdle(int index) {
+        if (mPipelined || index < 0 || index >= mWorkers.length) {
+            return;
+        }
+        if (mWorkers.length == 1) {
+            // The single worker is bound when its frame is requested, so a delivered frame is
+            // always the one in flight.
+            mFrameRequested = false;
+        }
+        if (!mIdleWorkers.contains(index)) {
+            mIdleWorkers.add(index);
+        }
+    }
+
+    /**
+     * Cancels every frame handed out so far; workers still decoding them will stop at their next
+     * check and report a failure instead of a result. A frame request still pending is forgotten
+     * too, so that restarting always asks the camera for a fresh frame.
+     */
+    synchronized void cancelInFlight() {
+        mCancelledSequence = mLastSequence;
+        mFrameRequested = false;
+    }
+
+    /**
+     * @return {@code true} if the frame the given worker is decoding has been cancelled, either
+     * because another frame already produced a result or because decoding was restarted.
+     */
+    boolean isStale(int index) {
+        return mWorkerSequences.get(index) <= mCancelledSequence;
+    }
+
+    void quitSynchronously() {
+        synchronized (this) {
+            if (mPipelined) {
+                stopStreaming();
+            }
+        }
+        for (DecodeThread worker : mWorkers) {
+            Message quit = Message.obtain(worker.getHandler(), R.id.quit);
+            quit.sendToTarget();
+        }
+        for (DecodeThread worker : mWorkers) {
+            try {
+                // Wait at most half a second; should be enough time, and onPause() will timeout quickly
+                worker.join(100L);
+            } catch (InterruptedException e) {
+                // continue
+            }
+        }
+    }
+}
@@ -128,6 +128,12 @@ public final class Intents {
          */
         public static final String RESULT = "SCAN_RESULT";
 
+        /**
+         * In multi-barcode mode, call {@link android.content.Intent#getStringArrayExtra(String)}
+         * with {@code RESULTS} to get the contents of every barcode found.
+         */
+        public static final String RESULTS = "SCAN_RESULTS";
+
         /**
          * Call {@link android.content.Intent#getStringExtra(String)} with {@code RESULT_FORMAT}
          * to determine which barcode format was found.
@@ -1,5 +1,7 @@
 package com.jeffmony.orcode;
 
+import com.google.zxing.Result;
+
 public interface OnCaptureCallback {
 
     /**
@@ -8,4 +10,17 @@ public interface OnCaptureCallback {
      * @return 返回true表示拦截，将不自动执行后续逻辑，为false表示不拦截
      */
     boolean onResultCallback(String result);
+
+    /**
+     * 多码识别模式下接收一帧中识别到的所有结果，默认逐个回调{@link #onResultCallback(String)}
+     * @param results 扫码结果，同一位置的同一个码只会出现一次
+     * @return 返回true表示拦截，将不自动执行后续逻辑，为false表示不拦截
+     */
+    default boolean onResultCallback(Result[] results) {
+        boolean intercepted = false;
+        for (Result result : results) {
+            intercepted |= onResultCallback(result.getText());
+        }
+        return intercepted;
+    }
 }
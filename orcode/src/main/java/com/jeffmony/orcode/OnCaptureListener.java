@@ -6,4 +6,11 @@ import com.google.zxing.Result;
 
 public interface OnCaptureListener {
     void onHandleDecode(Result result, Bitmap barcode, float scaleFactor);
+
+    /**
+     * 多码识别模式下，一帧中识别到的所有结果，默认只处理第一个
+     */
+    default void onHandleDecode(Result[] results, Bitmap barcode, float scaleFactor) {
+        onHandleDecode(results[0], barcode, scaleFactor);
+    }
 }
@@ -35,6 +35,10 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     private static final String TAG = AutoFocusManager.class.getSimpleName();
 
     private static final long AUTO_FOCUS_INTERVAL_MS = 1200L;
+    /**
+     * Blurry frames in a row after which focusing starts right away.
+     */
+    private static final int BLURRY_FRAMES_TO_FOCUS = 3;
     private static final Collection<String> FOCUS_MODES_CALLING_AF;
     static {
         FOCUS_MODES_CALLING_AF = new ArrayList<>(2);
@@ -47,6 +51,8 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     private final boolean mUseAutoFocus;
     private final Camera mCamera;
     private AsyncTask<?,?,?> mOutstandingTask;
+    private long mLastSharpFrameTime;
+    private int mBlurryFrames;
 
     AutoFocusManager(Context context, Camera camera) {
         this.mCamera = camera;
@@ -94,6 +100,38 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
         }
     }
 
+    /**
+     * Called when the periodic focus is due. Focusing is postponed while frames are coming out
+     * sharp, since a new sweep would only blur them.
+     */
+    private synchronized void onAutoFocusDue() {
+        if (System.currentTimeMillis() - mLastSharpFrameTime < AUTO_FOCUS_INTERVAL_MS) {
+            mOutstandingTask = null;
+            autoFocusAgainLater();
+        } else {
+            start();
+        }
+    }
+
+    /**
+     * Feeds back the sharpness of a preview frame as judged before decoding it: a few blurry
+     * frames in a row start focusing without waiting for the next periodic focus.
+     *
+     * @param sharp Whether the frame was sharp enough to be decoded.
+     */
+    synchronized void onFrameSharpness(boolean sharp) {
+        if (sharp) {
+            mLastSharpFrameTime = System.currentTimeMillis();
+            mBlurryFrames = 0;
+            return;
+        }
+        if (++mBlurryFrames >= BLURRY_FRAMES_TO_FOCUS && mUseAutoFocus && !mStopped && !mFocusing) {
+            mBlurryFrames = 0;
+            cancelOutstandingTask();
+            start();
+        }
+    }
+
     private synchronized void cancelOutstandingTask() {
         if (mOutstandingTask != null) {
             if (mOutstandingTask.getStatus() != AsyncTask.Status.FINISHED) {
@@ -134,7 +172,7 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
             }
             AutoFocusManager manager = weakReference.get();
             if(manager!=null){
-                manager.start();
+                manager.onAutoFocusDue();
             }
             return null;
         }
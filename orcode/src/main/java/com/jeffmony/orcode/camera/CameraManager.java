@@ -17,6 +17,7 @@ package com.jeffmony.orcode.camera;
  */
 
 import android.content.Context;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
@@ -26,6 +27,7 @@ import android.view.SurfaceHolder;
 import androidx.annotation.FloatRange;
 
 import com.google.zxing.PlanarYUVLuminanceSource;
+import com.jeffmony.orcode.decode.RotatedPlanarYUVLuminanceSource;
 import com.jeffmony.orcode.utils.LogUtils;
 
 import java.io.IOException;
@@ -75,6 +77,13 @@ public final class CameraManager {
 
     private boolean mIsTorch;
 
+    /**
+     * Number of preview buffers cycled through {@link Camera#addCallbackBuffer(byte[])}; 0 means
+     * every frame is requested with {@link Camera#setOneShotPreviewCallback(Camera.PreviewCallback)}.
+     */
+    private int mPreviewBufferCount;
+    private byte[][] mPreviewBuffers;
+
     public CameraManager(Context context) {
         this.mContext = context.getApplicationContext();
         this.mConfigManager = new CameraConfigurationManager(context);
@@ -161,6 +170,9 @@ public final class CameraManager {
     public void startPreview() {
         OpenCamera theCamera = mCamera;
         if (theCamera != null && !mPreviewing) {
+            if (mPreviewBufferCount > 0) {
+                setupPreviewBuffers(theCamera.getCamera());
+            }
             theCamera.getCamera().startPreview();
             mPreviewing = true;
             mAutoFocusManager = new AutoFocusManager(mContext, theCamera.getCamera());
@@ -178,10 +190,72 @@ public final class CameraManager {
         if (mCamera != null && mPreviewing) {
             mCamera.getCamera().stopPreview();
             mPreviewCallback.setHandler(null, 0);
+            stopPreviewFrames();
+            if (mPreviewCallback.isBufferMode()) {
+                // Clears the buffer queue as well.
+                mCamera.getCamera().setPreviewCallbackWithBuffer(null);
+                mPreviewCallback.setBufferMode(false);
+            }
             mPreviewing = false;
         }
     }
 
+    /**
+     * Hands the ring of preview buffers to the camera, allocating it only when the preview size
+     * changed since the last time.
+     */
+    private void setupPreviewBuffers(Camera camera) {
+        Point previewSize = mConfigManager.getBestPreviewSize();
+        if (previewSize == null) {
+            return;
+        }
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(camera.getParameters().getPreviewFormat());
+        if (bitsPerPixel <= 0) {
+            bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);
+        }
+        int bufferSize = previewSize.x * previewSize.y * bitsPerPixel / 8;
+        if (mPreviewBuffers == null || mPreviewBuffers.length != mPreviewBufferCount
+                || mPreviewBuffers[0].length != bufferSize) {
+            mPreviewBuffers = new byte[mPreviewBufferCount][bufferSize];
+            LogUtils.d(TAG, "Allocated " + mPreviewBufferCount + " preview buffers of " + bufferSize + " bytes");
+        }
+        mPreviewCallback.setBufferMode(true);
+        camera.setPreviewCallbackWithBuffer(mPreviewCallback);
+        // Every buffer is queued again here, including any still held by a decoder from before
+        // the restart; releasing those later must not queue them a second time.
+        mPreviewCallback.clearOutstandingBuffers();
+        for (byte[] buffer : mPreviewBuffers) {
+            camera.addCallbackBuffer(buffer);
+        }
+    }
+
+    /**
+     * Gives a preview frame delivered by {@link #requestPreviewFrame(Handler, int)} back to the
+     * camera once the decoder is done with it. Does nothing unless preview buffers are recycled,
+     * nor for a frame delivered before the preview was last restarted, whose buffer has already
+     * been queued again.
+     *
+     * @param data The preview frame, as received in message.obj.
+     */
+    public synchronized void releasePreviewBuffer(byte[] data) {
+        OpenCamera theCamera = mCamera;
+        if (data != null && theCamera != null && mPreviewing && mPreviewCallback.isBufferMode()
+                && mPreviewCallback.takeOutstandingBuffer(data)) {
+            theCamera.getCamera().addCallbackBuffer(data);
+        }
+    }
+
+    /**
+     * Sets how many preview buffers are recycled between the camera and the decoder, instead of
+     * letting the camera allocate a new array for every frame. Takes effect on the next
+     * {@link #startPreview()}.
+     *
+     * @param previewBufferCount 0 to disable recycling.
+     */
+    public synchronized void setPreviewBufferCount(int previewBufferCount) {
+        this.mPreviewBufferCount = Math.max(0, previewBufferCount);
+    }
+
     /**
      * Convenience method for {@link com.jeffmony.orcode.CaptureActivity}
      *
@@ -214,7 +288,8 @@ public final class CameraManager {
     /**
      * A single preview frame will be returned to the handler supplied. The data will arrive as byte[]
      * in the message.obj field, with width and height encoded as message.arg1 and message.arg2,
-     * respectively.
+     * respectively. When preview buffers are recycled the receiver must hand the data back through
+     * {@link #releasePreviewBuffer(byte[])}.
      *
      * @param handler The handler to send the message to.
      * @param message The what field of the message to be sent.
@@ -223,7 +298,40 @@ public final class CameraManager {
         OpenCamera theCamera = mCamera;
         if (theCamera != null && mPreviewing) {
             mPreviewCallback.setHandler(handler, message);
-            theCamera.getCamera().setOneShotPreviewCallback(mPreviewCallback);
+            if (!mPreviewCallback.isBufferMode()) {
+                theCamera.getCamera().setOneShotPreviewCallback(mPreviewCallback);
+            }
+        }
+    }
+
+    /**
+     * Streams every preview frame to the listener on the camera callback thread until
+     * {@link #stopPreviewFrames()} is called, so that frames keep coming while earlier ones are
+     * being decoded. With recycled preview buffers the listener must release each frame through
+     * {@link #releasePreviewBuffer(byte[])}, which also caps how many frames can be in flight.
+     *
+     * @param listener The listener receiving the frames.
+     */
+    public synchronized void startPreviewFrames(OnPreviewFrameListener listener) {
+        OpenCamera theCamera = mCamera;
+        if (theCamera != null && mPreviewing) {
+            mPreviewCallback.setFrameListener(listener);
+            if (!mPreviewCallback.isBufferMode()) {
+                theCamera.getCamera().setPreviewCallback(mPreviewCallback);
+            }
+        }
+    }
+
+    /**
+     * Stops the stream started by {@link #startPreviewFrames(OnPreviewFrameListener)}.
+     */
+    public synchronized void stopPreviewFrames() {
+        OpenCamera theCamera = mCamera;
+        if (mPreviewCallback.hasFrameListener()) {
+            mPreviewCallback.setFrameListener(null);
+            if (theCamera != null && !mPreviewCallback.isBufferMode()) {
+                theCamera.getCamera().setPreviewCallback(null);
+            }
         }
     }
 
@@ -294,6 +402,17 @@ public final class CameraManager {
         return mFramingRectInPreview;
     }
 
+    /**
+     * Feeds back whether a preview frame was sharp enough to be decoded, so that focusing can be
+     * started early on blurry frames and held off while they are sharp.
+     */
+    public void onFrameSharpness(boolean sharp) {
+        AutoFocusManager autoFocusManager = mAutoFocusManager;
+        if (autoFocusManager != null) {
+            autoFocusManager.onFrameSharpness(sharp);
+        }
+    }
+
     public void setFullScreenScan(boolean fullScreenScan) {
         mIsFullScreenScan = fullScreenScan;
     }
@@ -381,6 +500,34 @@ public final class CameraManager {
                 size, size, false);
     }
 
+    /**
+     * Like {@link #buildLuminanceSource(byte[], int, int)}, but for the frame rotated 90 degrees
+     * clockwise, without copying or rotating the frame itself.
+     *
+     * @param data A preview frame, not rotated.
+     * @param width The width of the preview frame.
+     * @param height The height of the preview frame.
+     * @param matrixBuffer A crop-sized array from a previous source to reuse, or {@code null}.
+     * @return A RotatedPlanarYUVLuminanceSource instance.
+     */
+    public RotatedPlanarYUVLuminanceSource buildRotatedLuminanceSource(byte[] data, int width, int height, byte[] matrixBuffer) {
+        Rect rect = getFramingRectInPreview();
+        if (rect == null) {
+            return null;
+        }
+        // The rotated frame is as wide as the original is high.
+        int rotatedWidth = height;
+        int rotatedHeight = width;
+        if(mIsFullScreenScan){
+            return new RotatedPlanarYUVLuminanceSource(data, width, height, 0, 0, rotatedWidth, rotatedHeight, matrixBuffer);
+        }
+        int size = (int)(Math.min(rotatedWidth,rotatedHeight) * mFramingRectRatio);
+        int left = (rotatedWidth-size)/2 + mFramingRectHorizontalOffset;
+        int top = (rotatedHeight-size)/2 + mFramingRectVerticalOffset;
+        return new RotatedPlanarYUVLuminanceSource(data, width, height, left, top,
+                size, size, matrixBuffer);
+    }
+
     /**
      * 提供闪光灯监听
      * @param listener
@@ -412,6 +559,19 @@ public final class CameraManager {
     }
 
 
+    /**
+     * 连续预览帧监听
+     */
+    public interface OnPreviewFrameListener{
+        /**
+         * 每一帧预览数据都会在相机回调线程中触发
+         * @param data 预览帧数据
+         * @param width 预览帧宽
+         * @param height 预览帧高
+         */
+        void onPreviewFrame(byte[] data, int width, int height);
+    }
+
     /**
      * 传感器灯光亮度监听
      */
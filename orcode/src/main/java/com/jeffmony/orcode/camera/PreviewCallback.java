@@ -23,12 +23,23 @@ import android.os.Message;
 
 import com.jeffmony.orcode.utils.LogUtils;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 @SuppressWarnings("deprecation") // camera APIs
 final class PreviewCallback implements Camera.PreviewCallback {
     private static final String TAG = PreviewCallback.class.getSimpleName();
     private final CameraConfigurationManager mConfigManager;
     private Handler mPreviewHandler;
     private int mPreviewMessage;
+    private boolean mBufferMode;
+    private CameraManager.OnPreviewFrameListener mFrameListener;
+    /**
+     * Buffer mode only: the buffers handed out with a frame and not given back to the camera yet.
+     */
+    private final Set<byte[]> mOutstandingBuffers =
+            Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
 
     PreviewCallback(CameraConfigurationManager configManager) {
         this.mConfigManager = configManager;
@@ -39,15 +50,76 @@ final class PreviewCallback implements Camera.PreviewCallback {
         this.mPreviewMessage = previewMessage;
     }
 
+    /**
+     * In buffer mode the camera keeps delivering frames into the buffers it was given; frames that
+     * nobody asked for go straight back to it.
+     */
+    void setBufferMode(boolean bufferMode) {
+        this.mBufferMode = bufferMode;
+    }
+
+    boolean isBufferMode() {
+        return mBufferMode;
+    }
+
+    /**
+     * Forgets every buffer handed out so far, once all of them have been queued with the camera
+     * again, so that a late release of one of them cannot queue it twice.
+     */
+    void clearOutstandingBuffers() {
+        synchronized (mOutstandingBuffers) {
+            mOutstandingBuffers.clear();
+        }
+    }
+
+    /**
+     * @return {@code true} if the buffer was handed out with a frame and has not been taken back
+     * since; it then counts as given back.
+     */
+    boolean takeOutstandingBuffer(byte[] data) {
+        synchronized (mOutstandingBuffers) {
+            return mOutstandingBuffers.remove(data);
+        }
+    }
+
+    private void handOut(byte[] data) {
+        if (mBufferMode) {
+            synchronized (mOutstandingBuffers) {
+                mOutstandingBuffers.add(data);
+            }
+        }
+    }
+
+    /**
+     * Every frame is handed to the listener on the camera callback thread, instead of one frame per
+     * {@link #setHandler(Handler, int)} call.
+     */
+    void setFrameListener(CameraManager.OnPreviewFrameListener frameListener) {
+        this.mFrameListener = frameListener;
+    }
+
+    boolean hasFrameListener() {
+        return mFrameListener != null;
+    }
+
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
         Point cameraResolution = mConfigManager.getCameraResolution();
+        CameraManager.OnPreviewFrameListener theFrameListener = mFrameListener;
+        if (cameraResolution != null && theFrameListener != null) {
+            handOut(data);
+            theFrameListener.onPreviewFrame(data, cameraResolution.x, cameraResolution.y);
+            return;
+        }
         Handler thePreviewHandler = mPreviewHandler;
         if (cameraResolution != null && thePreviewHandler != null) {
+            handOut(data);
             Message message = thePreviewHandler.obtainMessage(mPreviewMessage, cameraResolution.x,
                     cameraResolution.y, data);
             message.sendToTarget();
             mPreviewHandler = null;
+        } else if (mBufferMode) {
+            camera.addCallbackBuffer(data);
         } else {
             LogUtils.w(TAG,"Got preview callback, but no handler or resolution available");
         }
@@ -0,0 +1,143 @@
+package com.jeffmony.orcode.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行{@link CodeBatch}和{@link CodeParseBatch}的批次
+ *
+ * 所有批次共用一个线程数等于CPU核数的线程池，每个批次最多占用全部线程，每个线程依次取下一项处理，
+ * 直到全部处理完或被取消，最后结束的线程回调{@link Worker#onFinished(boolean)}
+ */
+final class BatchRunner {
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    interface Worker {
+        /**
+         * 在批次线程中调用，多个线程可能同时调用
+         * @param index 项在批次中的位置
+         */
+        void process(int index);
+
+        /**
+         * 全部处理或取消后调用一次，在批次线程中调用
+         * @param cancelled 是否被取消
+         */
+        void onFinished(boolean cancelled);
+    }
+
+    /**
+     * 批次线程，用于{@link #isBatchThread()}
+     */
+    private static final class BatchThread extends Thread {
+        BatchThread(Runnable target, String name) {
+            super(target, name);
+        }
+    }
+
+    private final int mSize;
+    private final Worker mWorker;
+    private final AtomicInteger mNextIndex = new AtomicInteger();
+    private final AtomicInteger mRunningWorkers = new AtomicInteger();
+    private final CountDownLatch mFinished = new CountDownLatch(1);
+    private volatile boolean mCancelled;
+
+    /**
+     * @param size 批次中的项数
+     * @param worker
+     */
+    BatchRunner(int size, Worker worker) {
+        this.mSize = size;
+        this.mWorker = worker;
+    }
+
+    /**
+     * 在共用线程池中开始处理，只能调用一次
+     */
+    void start() {
+        ThreadPoolExecutor executor = getExecutor();
+        int workers = Math.max(1, Math.min(mSize, executor.getMaximumPoolSize()));
+        mRunningWorkers.set(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return 当前线程是否为批次线程
+     */
+    static boolean isBatchThread() {
+        return Thread.currentThread() instanceof BatchThread;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            sExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new BatchThread(r, "CodeBatch-" + mCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // 空闲时释放线程及其缓冲
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    private void work() {
+        try {
+            int index;
+            while (!mCancelled && (index = mNextIndex.getAndIncrement()) < mSize) {
+                mWorker.process(index);
+            }
+        } finally {
+            if (mRunningWorkers.decrementAndGet() == 0) {
+                try {
+                    mWorker.onFinished(mCancelled);
+                } finally {
+                    mFinished.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消剩余未处理的项
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
+    boolean isCancelled() {
+        return mCancelled;
+    }
+
+    boolean isDone() {
+        return mFinished.getCount() == 0;
+    }
+
+    /**
+     * 等待批次全部处理或取消，不要在主线程调用
+     */
+    void await() throws InterruptedException {
+        mFinished.await();
+    }
+}
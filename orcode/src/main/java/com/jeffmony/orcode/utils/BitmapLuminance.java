@@ -0,0 +1,73 @@
+package com.jeffmony.orcode.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * 将Bitmap逐段转换为亮度，每次只读取{@link #BAND_ROWS}行像素，不需要整张图片的int[]
+ */
+final class BitmapLuminance {
+
+    static final int BAND_ROWS = 16;
+
+    /**
+     * 解析时每像素占用的字节数：ARGB_8888的Bitmap加上亮度
+     */
+    static final int BYTES_PER_PIXEL = 4 + 1;
+
+    private BitmapLuminance() {
+    }
+
+    /**
+     * @param bitmap
+     * @return 整张图片的亮度，每像素1字节
+     */
+    static byte[] read(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] luminance = new byte[width * height];
+        read(bitmap, width, height, luminance, null);
+        return luminance;
+    }
+
+    /**
+     * 读取左上角width x height的亮度，图片小于该尺寸时按白色补齐
+     * @param bitmap
+     * @param width
+     * @param height
+     * @param luminance 按行存放，每行width字节
+     * @param band 复用的像素缓冲，可以为null
+     * @return 像素缓冲，可在下次调用时传入
+     */
+    static int[] read(Bitmap bitmap, int width, int height, byte[] luminance, int[] band) {
+        int bitmapWidth = Math.min(bitmap.getWidth(), width);
+        int bitmapHeight = Math.min(bitmap.getHeight(), height);
+        if (band == null || band.length < bitmapWidth * BAND_ROWS) {
+            band = new int[bitmapWidth * BAND_ROWS];
+        }
+        for (int top = 0; top < bitmapHeight; top += BAND_ROWS) {
+            int rows = Math.min(BAND_ROWS, bitmapHeight - top);
+            bitmap.getPixels(band, 0, bitmapWidth, 0, top, bitmapWidth, rows);
+            for (int y = 0; y < rows; y++) {
+                int from = y * bitmapWidth;
+                int to = (top + y) * width;
+                for (int x = 0; x < bitmapWidth; x++) {
+                    int pixel = band[from + x];
+                    int r = (pixel >> 16) & 0xff;
+                    int g = (pixel >> 8) & 0xff;
+                    int b = pixel & 0xff;
+                    // 与RGBLuminanceSource相同的权重
+                    luminance[to + x] = (byte) ((r + 2 * g + b) / 4);
+                }
+                if (bitmapWidth < width) {
+                    Arrays.fill(luminance, to + bitmapWidth, to + width, (byte) 0xff);
+                }
+            }
+        }
+        if (bitmapHeight < height) {
+            Arrays.fill(luminance, bitmapHeight * width, height * width, (byte) 0xff);
+        }
+        return band;
+    }
+}
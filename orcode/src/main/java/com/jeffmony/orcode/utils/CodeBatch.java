@@ -0,0 +1,129 @@
+package com.jeffmony.orcode.utils;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量生成二维码/条形码，见{@link CodeUtils#createQRCodes}和{@link CodeUtils#createBarCodes}
+ *
+ * 由{@link BatchRunner}在共用线程池中执行，每个线程依次取下一个内容生成；
+ * 生成的图片立即通过{@link Callback}回调，不在批次中保留，所以内存峰值只与线程数有关，与批次大小无关
+ */
+public final class CodeBatch {
+
+    /**
+     * 批次线程各自复用的writer和像素缓冲，只在批次线程中存在
+     */
+    private static final ThreadLocal<Buffers> sBuffers = new ThreadLocal<>();
+
+    public interface Callback {
+        /**
+         * 每生成一个即回调，在生成线程中调用，多个线程可能同时回调
+         * @param index 内容在列表中的位置
+         * @param content
+         * @param bitmap 生成失败时为null
+         */
+        void onCodeCreated(int index, String content, Bitmap bitmap);
+
+        /**
+         * 全部生成或取消后回调一次，在生成线程中调用
+         * @param cancelled 是否被取消
+         */
+        default void onBatchFinished(boolean cancelled) {
+
+        }
+    }
+
+    interface Creator {
+        Bitmap create(String content);
+    }
+
+    static final class Buffers {
+        final QRCodeWriter mQRCodeWriter = new QRCodeWriter();
+        final MultiFormatWriter mWriter = new MultiFormatWriter();
+        int[] mBand;
+    }
+
+    private final List<String> mContents;
+    private final Creator mCreator;
+    private final Callback mCallback;
+    private final BatchRunner mRunner;
+
+    private CodeBatch(List<String> contents, Creator creator, Callback callback) {
+        this.mContents = new ArrayList<>(contents);
+        this.mCreator = creator;
+        this.mCallback = callback;
+        this.mRunner = new BatchRunner(mContents.size(), new BatchRunner.Worker() {
+            @Override
+            public void process(int index) {
+                create(index);
+            }
+
+            @Override
+            public void onFinished(boolean cancelled) {
+                mCallback.onBatchFinished(cancelled);
+            }
+        });
+    }
+
+    static CodeBatch start(List<String> contents, Creator creator, Callback callback) {
+        CodeBatch batch = new CodeBatch(contents, creator, callback);
+        batch.mRunner.start();
+        return batch;
+    }
+
+    /**
+     * @return 当前线程是批次线程时返回其缓冲，否则为null
+     */
+    static Buffers getBuffers() {
+        if (!BatchRunner.isBatchThread()) {
+            return null;
+        }
+        Buffers buffers = sBuffers.get();
+        if (buffers == null) {
+            buffers = new Buffers();
+            sBuffers.set(buffers);
+        }
+        return buffers;
+    }
+
+    private void create(int index) {
+        String content = mContents.get(index);
+        Bitmap bitmap = null;
+        try {
+            bitmap = mCreator.create(content);
+        } catch (Exception e) {
+            LogUtils.w("CodeBatch", "Failed to create code " + index, e);
+        }
+        if (!mRunner.isCancelled()) {
+            mCallback.onCodeCreated(index, content, bitmap);
+        }
+    }
+
+    /**
+     * 取消剩余未生成的内容，正在生成的不再回调
+     */
+    public void cancel() {
+        mRunner.cancel();
+    }
+
+    public boolean isCancelled() {
+        return mRunner.isCancelled();
+    }
+
+    public boolean isDone() {
+        return mRunner.isDone();
+    }
+
+    /**
+     * 等待批次全部生成或取消，不要在主线程调用
+     */
+    public void await() throws InterruptedException {
+        mRunner.await();
+    }
+}
@@ -0,0 +1,176 @@
+package com.jeffmony.orcode.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 缓存{@link CodeUtils}生成的二维码/条形码图片，按内容、格式、尺寸、颜色、logo、编码参数及图片格式区分，
+ * 按{@link Bitmap#getAllocationByteCount()}计算占用的内存
+ *
+ * 缓存的图片会被多次返回，调用方不能修改或recycle；
+ * 通过{@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)}注册后，
+ * 会在{@link #onTrimMemory(int)}时释放缓存
+ */
+public final class CodeBitmapCache implements ComponentCallbacks2 {
+
+    private final LruCache<Key, Bitmap> mCache;
+
+    /**
+     * @param maxBytes 缓存的最大字节数
+     */
+    public CodeBitmapCache(int maxBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    Bitmap get(Key key) {
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null && bitmap.isRecycled()) {
+            mCache.remove(key);
+            return null;
+        }
+        return bitmap;
+    }
+
+    void put(Key key, Bitmap bitmap) {
+        if (bitmap != null) {
+            mCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * 命中次数
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * 当前占用的字节数
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void evictAll() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+
+    }
+
+    /**
+     * 一张生成图片的全部参数
+     */
+    static final class Key {
+        private final String mContent;
+        private final BarcodeFormat mFormat;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mCodeColor;
+        /** logo按引用区分，generationId用于发现logo被修改 */
+        private final Bitmap mLogo;
+        private final int mLogoGenerationId;
+        private final float mRatio;
+        private final Map<EncodeHintType, Object> mHints;
+        private final boolean mShowText;
+        private final int mTextSize;
+        private final Bitmap.Config mConfig;
+        private final int mHashCode;
+
+        Key(String content, BarcodeFormat format, int width, int height, int codeColor,
+            Bitmap logo, float ratio, Map<EncodeHintType, ?> hints, boolean showText, int textSize,
+            Bitmap.Config config) {
+            this.mContent = content;
+            this.mFormat = format;
+            this.mWidth = width;
+            this.mHeight = height;
+            // ALPHA_8不保存颜色
+            this.mCodeColor = config == Bitmap.Config.ALPHA_8 ? 0 : codeColor;
+            this.mLogo = logo;
+            this.mLogoGenerationId = logo != null ? logo.getGenerationId() : 0;
+            this.mRatio = logo != null ? ratio : 0;
+            // 复制一份，避免调用方之后修改hints
+            this.mHints = new EnumMap<>(EncodeHintType.class);
+            if (hints != null) {
+                this.mHints.putAll(hints);
+            }
+            this.mShowText = showText;
+            this.mTextSize = showText ? textSize : 0;
+            this.mConfig = config;
+            this.mHashCode = Arrays.hashCode(new Object[]{mContent, mFormat, mWidth, mHeight, mCodeColor,
+                    System.identityHashCode(mLogo), mLogoGenerationId, mRatio, mHints, mShowText, mTextSize, mConfig});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mWidth == key.mWidth
+                    && mHeight == key.mHeight
+                    && mCodeColor == key.mCodeColor
+                    && mLogo == key.mLogo
+                    && mLogoGenerationId == key.mLogoGenerationId
+                    && Float.compare(mRatio, key.mRatio) == 0
+                    && mShowText == key.mShowText
+                    && mTextSize == key.mTextSize
+                    && mFormat == key.mFormat
+                    && mConfig == key.mConfig
+                    && mContent.equals(key.mContent)
+                    && mHints.equals(key.mHints);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
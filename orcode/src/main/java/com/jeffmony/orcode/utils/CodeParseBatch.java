@@ -0,0 +1,291 @@
+package com.jeffmony.orcode.utils;
+
+import com.google.zxing.Result;
+import com.jeffmony.orcode.decode.CodeDecoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量解析图片文件或Uri中的二维码/条形码，见{@link CodeUtils#parseCodes}
+ *
+ * 由{@link BatchRunner}在与{@link CodeBatch}共用的线程池中执行，每个线程依次取下一个文件解析，结果立即通过{@link Callback}回调；
+ * 每个文件解析前按其缩放后的尺寸预估内存，同一批次同时解析的文件总共不超过内存预算，
+ * 超过单个文件超时时间的在下一种解码策略之前停止
+ */
+public final class CodeParseBatch {
+
+    public interface Callback {
+        /**
+         * 每解析完一个文件即回调，在解析线程中调用，多个线程可能同时回调
+         * @param index 文件在列表中的位置
+         * @param path 文件路径，解析Uri时为{@link android.net.Uri#toString()}
+         * @param result 没有解析出码时为null
+         */
+        void onCodeParsed(int index, String path, Result result);
+
+        /**
+         * 文件无法读取或解析超时时回调，代替{@link #onCodeParsed}，在解析线程中调用
+         * @param index 文件在列表中的位置
+         * @param path
+         * @param error 超时时为{@link TimeoutException}
+         */
+        default void onParseFailed(int index, String path, Exception error) {
+
+        }
+
+        /**
+         * 全部解析或取消后回调一次，在解析线程中调用
+         * @param statistics 本批次的统计
+         * @param cancelled 是否被取消
+         */
+        default void onBatchFinished(Statistics statistics, boolean cancelled) {
+
+        }
+    }
+
+    interface Parser {
+        /**
+         * 打开文件并读取其尺寸，解析完成后关闭
+         * @param path
+         */
+        Source open(String path) throws IOException;
+    }
+
+    interface Source extends Closeable {
+        /**
+         * @return 解析需要的内存字节数
+         */
+        long estimateBytes();
+
+        /**
+         * @param cancellation 在每种解码策略之前检查
+         * @return 没有解析出码时为null
+         */
+        Result parse(CodeDecoder.Cancellation cancellation);
+    }
+
+    /**
+     * 批次的统计，各项随解析进度更新
+     */
+    public static final class Statistics {
+        private final int mTotal;
+        private final long mStartNanos = System.nanoTime();
+        private final AtomicInteger mFound = new AtomicInteger();
+        private final AtomicInteger mNotFound = new AtomicInteger();
+        private final AtomicInteger mFailed = new AtomicInteger();
+        private final AtomicInteger mTimedOut = new AtomicInteger();
+        private volatile long mEndNanos;
+
+        Statistics(int total) {
+            this.mTotal = total;
+        }
+
+        /**
+         * 文件总数
+         */
+        public int getTotal() {
+            return mTotal;
+        }
+
+        /**
+         * 已处理的文件数
+         */
+        public int getProcessed() {
+            return mFound.get() + mNotFound.get() + mFailed.get() + mTimedOut.get();
+        }
+
+        /**
+         * 解析出码的文件数
+         */
+        public int getFound() {
+            return mFound.get();
+        }
+
+        /**
+         * 没有解析出码的文件数
+         */
+        public int getNotFound() {
+            return mNotFound.get();
+        }
+
+        /**
+         * 无法读取的文件数
+         */
+        public int getFailed() {
+            return mFailed.get();
+        }
+
+        /**
+         * 解析超时的文件数
+         */
+        public int getTimedOut() {
+            return mTimedOut.get();
+        }
+
+        /**
+         * 从开始到结束（未结束时到现在）经过的毫秒数
+         */
+        public long getElapsedMillis() {
+            long end = mEndNanos != 0 ? mEndNanos : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - mStartNanos);
+        }
+
+        /**
+         * 每秒处理的文件数
+         */
+        public float getFilesPerSecond() {
+            long elapsed = getElapsedMillis();
+            return elapsed > 0 ? getProcessed() * 1000f / elapsed : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{total=" + mTotal + ", found=" + mFound + ", notFound=" + mNotFound
+                    + ", failed=" + mFailed + ", timedOut=" + mTimedOut
+                    + ", elapsedMillis=" + getElapsedMillis() + ", filesPerSecond=" + getFilesPerSecond() + '}';
+        }
+    }
+
+    private final List<String> mPaths;
+    private final Parser mParser;
+    private final Callback mCallback;
+    private final int mMaxMemoryBytes;
+    private final Semaphore mMemory;
+    private final long mTimeoutNanos;
+    private final Statistics mStatistics;
+    private final BatchRunner mRunner;
+
+    private CodeParseBatch(List<String> paths, Parser parser, Callback callback,
+                           int maxMemoryBytes, long timeoutMillis) {
+        this.mPaths = new ArrayList<>(paths);
+        this.mParser = parser;
+        this.mCallback = callback;
+        this.mMaxMemoryBytes = maxMemoryBytes;
+        this.mMemory = new Semaphore(maxMemoryBytes, true);
+        this.mTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.mStatistics = new Statistics(mPaths.size());
+        this.mRunner = new BatchRunner(mPaths.size(), new BatchRunner.Worker() {
+            @Override
+            public void process(int index) {
+                parse(index, mPaths.get(index));
+            }
+
+            @Override
+            public void onFinished(boolean cancelled) {
+                mStatistics.mEndNanos = System.nanoTime();
+                mCallback.onBatchFinished(mStatistics, cancelled);
+            }
+        });
+    }
+
+    /**
+     * @param maxMemoryBytes 同时解析的文件总共最多占用的内存，单个文件超过时独占全部预算
+     * @param timeoutMillis 单个文件的超时时间，小于等于0时不超时
+     */
+    static CodeParseBatch start(List<String> paths, Parser parser, Callback callback,
+                                int maxMemoryBytes, long timeoutMillis) {
+        if (maxMemoryBytes <= 0) {
+            throw new IllegalArgumentException("maxMemoryBytes " + maxMemoryBytes);
+        }
+        CodeParseBatch batch = new CodeParseBatch(paths, parser, callback, maxMemoryBytes, timeoutMillis);
+        batch.mRunner.start();
+        return batch;
+    }
+
+    private void parse(int index, String path) {
+        Source source;
+        try {
+            source = mParser.open(path);
+        } catch (IOException e) {
+            fail(index, path, e, mStatistics.mFailed);
+            return;
+        }
+        Result result;
+        final long deadline;
+        try {
+            int bytes = (int) Math.min(source.estimateBytes(), mMaxMemoryBytes);
+            try {
+                mMemory.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mRunner.cancel();
+                return;
+            }
+            deadline = System.nanoTime() + mTimeoutNanos;
+            try {
+                result = source.parse(new CodeDecoder.Cancellation() {
+                    @Override
+                    public boolean isCancelled() {
+                        return mRunner.isCancelled() || isTimedOut(deadline);
+                    }
+                });
+            } finally {
+                mMemory.release(bytes);
+            }
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                LogUtils.w("CodeParseBatch", "Failed to close " + path, e);
+            }
+        }
+        if (mRunner.isCancelled()) {
+            return;
+        }
+        if (result == null && isTimedOut(deadline)) {
+            fail(index, path, new TimeoutException(path), mStatistics.mTimedOut);
+            return;
+        }
+        (result != null ? mStatistics.mFound : mStatistics.mNotFound).incrementAndGet();
+        mCallback.onCodeParsed(index, path, result);
+    }
+
+    private boolean isTimedOut(long deadline) {
+        return mTimeoutNanos > 0 && System.nanoTime() - deadline > 0;
+    }
+
+    private void fail(int index, String path, Exception error, AtomicInteger counter) {
+        if (mRunner.isCancelled()) {
+            return;
+        }
+        LogUtils.w("CodeParseBatch", "Failed to parse " + path, error);
+        counter.incrementAndGet();
+        mCallback.onParseFailed(index, path, error);
+    }
+
+    /**
+     * 取消剩余未解析的文件，正在解析的在下一种解码策略之前停止，不再回调
+     */
+    public void cancel() {
+        mRunner.cancel();
+    }
+
+    public boolean isCancelled() {
+        return mRunner.isCancelled();
+    }
+
+    public boolean isDone() {
+        return mRunner.isDone();
+    }
+
+    /**
+     * 本批次的统计，解析过程中也可以读取
+     */
+    public Statistics getStatistics() {
+        return mStatistics;
+    }
+
+    /**
+     * 等待批次全部解析或取消，不要在主线程调用
+     */
+    public void await() throws InterruptedException {
+        mRunner.await();
+    }
+}
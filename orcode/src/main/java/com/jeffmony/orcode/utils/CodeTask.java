@@ -0,0 +1,192 @@
+package com.jeffmony.orcode.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.jeffmony.orcode.decode.CodeDecoder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CodeUtils}异步方法返回的任务，可以{@link #cancel(boolean)}，也可以像{@link Future}一样等待结果
+ *
+ * 解析任务在每种解码策略之前检查是否已取消或超时，页面关闭时取消即可停止占用CPU；
+ * 超时从提交时开始计算，包括在线程池中排队的时间，超时后以{@link TimeoutException}结束；
+ * 默认的线程池只执行这类任务，不会排在{@link CodeBatch}和{@link CodeParseBatch}的批次之后
+ */
+public final class CodeTask<T> implements Future<T> {
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static ThreadPoolExecutor sExecutor;
+
+    public interface Callback<T> {
+        /**
+         * 在主线程回调，任务被取消时不回调
+         * @param result 没有结果时为null
+         */
+        void onSuccess(T result);
+
+        /**
+         * 出错或超时时在主线程回调，任务被取消时不回调
+         * @param e 超时时为{@link TimeoutException}
+         */
+        default void onFailure(Exception e) {
+
+        }
+    }
+
+    interface Work<T> {
+        /**
+         * @param cancellation 取消或超时后返回true
+         */
+        T run(CodeDecoder.Cancellation cancellation) throws Exception;
+    }
+
+    private final FutureTask<T> mFuture;
+    private final Callback<T> mCallback;
+    private final long mDeadlineNanos;
+    private final long mTimeoutNanos;
+
+    private CodeTask(final Work<T> work, long timeoutMillis, Callback<T> callback) {
+        this.mCallback = callback;
+        this.mTimeoutNanos = timeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        this.mDeadlineNanos = System.nanoTime() + mTimeoutNanos;
+        this.mFuture = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return CodeTask.this.call(work);
+            }
+        }) {
+            @Override
+            protected void done() {
+                deliver();
+            }
+        };
+    }
+
+    /**
+     * @param executor 为null时使用所有任务共用的线程池，与批次的线程池分开，不会排在批次之后
+     * @param timeoutMillis 小于等于0时不超时
+     * @param callback 可以为null
+     */
+    static <T> CodeTask<T> submit(Executor executor, Work<T> work, long timeoutMillis, Callback<T> callback) {
+        CodeTask<T> task = new CodeTask<>(work, timeoutMillis, callback);
+        (executor != null ? executor : getExecutor()).execute(task.mFuture);
+        return task;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            sExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CodeTask-" + mCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // 空闲时释放线程
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    private T call(Work<T> work) throws Exception {
+        if (isTimedOut()) {
+            throw new TimeoutException();
+        }
+        T result = work.run(new CodeDecoder.Cancellation() {
+            @Override
+            public boolean isCancelled() {
+                return mFuture.isCancelled() || isTimedOut();
+            }
+        });
+        // 超时后解码器不再尝试，返回的null不代表图片中没有码
+        if (result == null && isTimedOut()) {
+            throw new TimeoutException();
+        }
+        return result;
+    }
+
+    /**
+     * 是否已超过超时时间
+     */
+    public boolean isTimedOut() {
+        return mTimeoutNanos > 0 && System.nanoTime() - mDeadlineNanos > 0;
+    }
+
+    private void deliver() {
+        if (mCallback == null || isCancelled()) {
+            return;
+        }
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled()) {
+                    return;
+                }
+                T result;
+                try {
+                    result = mFuture.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    mCallback.onFailure(cause instanceof Exception ? (Exception) cause : e);
+                    return;
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                }
+                mCallback.onSuccess(result);
+            }
+        });
+    }
+
+    /**
+     * 取消任务，未开始的不再执行，正在解析的在下一种解码策略之前停止，之后不再回调
+     * @param mayInterruptIfRunning 是否中断执行任务的线程
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return mFuture.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mFuture.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return mFuture.isDone();
+    }
+
+    /**
+     * 等待结果，不要在主线程调用
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        return mFuture.get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return mFuture.get(timeout, unit);
+    }
+}
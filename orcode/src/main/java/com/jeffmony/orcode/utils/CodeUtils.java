@@ -15,42 +15,109 @@
  */
 package com.jeffmony.orcode.utils;
 
+import android.content.ContentResolver;
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.text.TextPaint;
 import android.text.TextUtils;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.FloatRange;
-import androidx.annotation.NonNull;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.Result;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.common.GlobalHistogramBinarizer;
-import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.QRCodeReader;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.QRCode;
 
 import com.jeffmony.orcode.DecodeFormatManager;
+import com.jeffmony.orcode.decode.CodeDecoder;
+import com.jeffmony.orcode.decode.DecodeStrategyScheduler;
+import com.jeffmony.orcode.decode.FormatReader;
+import com.jeffmony.orcode.decode.TiledDecoder;
+import com.jeffmony.orcode.encode.BitMatrixRenderer;
+import com.jeffmony.orcode.encode.QRCodeMatrixCache;
+import com.jeffmony.orcode.encode.QRCodeRenderer;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 
 public final class CodeUtils {
 
+    /**
+     * 分块解析大图时默认每块最多占用的内存，一块约1290x1290像素
+     */
+    public static final int DEFAULT_TILE_MEMORY_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * 批量解析时默认同时解析的文件总共最多占用的内存
+     */
+    public static final int DEFAULT_PARSE_MEMORY_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * 批量解析时默认单个文件的超时时间
+     */
+    public static final long DEFAULT_PARSE_TIMEOUT_MILLIS = 5000L;
+
+    /**
+     * 批量解析目录时识别为图片的文件扩展名
+     */
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp", ".bmp", ".gif"};
+
+    private static volatile CodeBitmapCache sBitmapCache;
+
+    /**
+     * 设置生成图片的缓存，相同参数再次生成时直接返回缓存的图片
+     * @param cache 为null时不缓存
+     */
+    public static void setBitmapCache(CodeBitmapCache cache) {
+        sBitmapCache = cache;
+    }
+
+    public static CodeBitmapCache getBitmapCache() {
+        return sBitmapCache;
+    }
+
+    private static volatile QRCodeMatrixCache sMatrixCache;
+
+    /**
+     * 设置二维码矩阵的缓存，相同内容以不同尺寸、颜色生成时不再重复编码
+     * @param cache 为null时不缓存
+     */
+    public static void setMatrixCache(QRCodeMatrixCache cache) {
+        sMatrixCache = cache;
+    }
+
+    public static QRCodeMatrixCache getMatrixCache() {
+        return sMatrixCache;
+    }
+
     public static Bitmap createQRCode(String content, int height) {
         return createQRCode(content, height, null);
     }
@@ -113,30 +180,56 @@ public final class CodeUtils {
      * @return
      */
     public static Bitmap createQRCode(String content, int height, Bitmap logo, @FloatRange(from = 0.0f,to = 1.0f)float ratio, Map<EncodeHintType,?> hints, int codeColor) {
+        return createQRCode(content, height, logo, ratio, hints, codeColor, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 以指定的图片格式生成二维码，用于大尺寸或批量生成时节省内存
+     * @param content 二维码的内容
+     * @param height 二维码的高
+     * @param hints
+     * @param codeColor 二维码的颜色，{@link Bitmap.Config#ALPHA_8}时忽略
+     * @param config {@link Bitmap.Config#ARGB_8888}、{@link Bitmap.Config#RGB_565}（每像素2字节）
+     *               或{@link Bitmap.Config#ALPHA_8}（每像素1字节，背景透明，颜色在绘制时由Paint或tint指定）
+     * @return
+     */
+    public static Bitmap createQRCode(String content, int height, Map<EncodeHintType,?> hints, @ColorInt int codeColor, Bitmap.Config config) {
+        return createQRCode(content, height, null, 0, hints, codeColor, config);
+    }
+
+    private static Bitmap createQRCode(String content, int height, Bitmap logo, float ratio, Map<EncodeHintType,?> hints, int codeColor, Bitmap.Config config) {
+        checkConfig(config);
+        CodeBitmapCache cache = sBitmapCache;
+        CodeBitmapCache.Key key = null;
+        if (cache != null && !TextUtils.isEmpty(content)) {
+            key = new CodeBitmapCache.Key(content, BarcodeFormat.QR_CODE, height, height, codeColor, logo, ratio, hints, false, 0, config);
+            Bitmap bitmap = cache.get(key);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
         try {
             // 图像数据转换，使用了矩阵转换
-            BitMatrix bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, height, height, hints);
-            int[] pixels = new int[height * height];
-            // 下面这里按照二维码的算法，逐个生成二维码的图片，
-            // 两个for循环是图片横列扫描的结果
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < height; x++) {
-                    if (bitMatrix.get(x, y)) {
-                        pixels[y * height + x] = codeColor;
-                    } else {
-                        pixels[y * height + x] = Color.WHITE;
-                    }
-                }
+            Bitmap bitmap;
+            QRCodeMatrixCache matrixCache = sMatrixCache;
+            if (matrixCache != null) {
+                // 缓存的矩阵与尺寸无关，直接按模块绘制
+                bitmap = createQRCode(matrixCache.encode(content, hints), height, QRCodeRenderer.getQuietZone(hints), codeColor, config);
+            } else {
+                CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+                QRCodeWriter writer = buffers != null ? buffers.mQRCodeWriter : new QRCodeWriter();
+                BitMatrix bitMatrix = writer.encode(content, BarcodeFormat.QR_CODE, height, height, hints);
+                // 生成二维码图片的格式
+                bitmap = createBitmap(bitMatrix, codeColor, config);
             }
 
-            // 生成二维码图片的格式
-            Bitmap bitmap = Bitmap.createBitmap(height, height, Bitmap.Config.ARGB_8888);
-            bitmap.setPixels(pixels, 0, height, 0, 0, height, height);
-
             if (logo != null) {
                 bitmap = addOrCodeLogo(bitmap, logo,ratio);
             }
 
+            if (key != null) {
+                cache.put(key, bitmap);
+            }
             return bitmap;
         } catch (WriterException e) {
             e.printStackTrace();
@@ -224,50 +317,12 @@ public final class CodeUtils {
      * @param hints
      * @return
      */
-    public static Result parseQRCodeResult(String bitmapPath, Map<DecodeHintType,?> hints){
+    public static Result parseQRCodeResult(String bitmapPath, final Map<DecodeHintType,?> hints){
         Result result = null;
         try{
-            QRCodeReader reader = new QRCodeReader();
-            RGBLuminanceSource source = getRGBLuminanceSource(compressBitmap(bitmapPath));
+            PlanarYUVLuminanceSource source = getLuminanceSource(compressBitmap(bitmapPath));
             if (source != null) {
-                boolean isReDecode;
-                try {
-                    BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                    result = reader.decode(bitmap,hints);
-                    isReDecode = false;
-                } catch (Exception e) {
-                    isReDecode = true;
-                }
-
-                if(isReDecode){
-                    try {
-                        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source.invert()));
-                        result = reader.decode(bitmap,hints);
-                        isReDecode = false;
-                    } catch (Exception e) {
-                        isReDecode = true;
-                    }
-                }
-
-                if(isReDecode){
-                    try{
-                        BinaryBitmap bitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                        result = reader.decode(bitmap,hints);
-                        isReDecode = false;
-                    }catch (Exception e){
-                        isReDecode = true;
-                    }
-                }
-
-                if(isReDecode && source.isRotateSupported()){
-                    try{
-                        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source.rotateCounterClockwise()));
-                        result = reader.decode(bitmap,hints);
-                    }catch (Exception e){
-
-                    }
-                }
-                reader.reset();
+                result = new CodeDecoder(new QRCodeReader(), hints, null).decode(source);
             }
 
         }catch (Exception e){
@@ -283,6 +338,14 @@ public final class CodeUtils {
      * @return
      */
     public static String parseCode(String bitmapPath){
+        return parseCode(bitmapPath, getDefaultDecodeHints());
+    }
+
+    /**
+     * 解析全部一维码/二维码类型时使用的hints
+     * @return
+     */
+    private static Map<DecodeHintType, Object> getDefaultDecodeHints(){
         Map<DecodeHintType, Object> hints = new HashMap<>();
         //添加可以解析的编码类型
         Vector<BarcodeFormat> decodeFormats = new Vector<>();
@@ -294,7 +357,7 @@ public final class CodeUtils {
 
         hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
         hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
-        return parseCode(bitmapPath, hints);
+        return hints;
     }
 
     /**
@@ -318,54 +381,492 @@ public final class CodeUtils {
      * @return
      */
     public static Result parseCodeResult(String bitmapPath, Map<DecodeHintType, Object> hints){
+        return parseCodeResult(bitmapPath, hints, null);
+    }
+
+    /**
+     * 解析条形码/二维码图片
+     * @param bitmapPath
+     * @param hints 解析编码类型
+     * @param scheduler 解码策略调度器，根据最近的成功率和耗时调整各解码策略的尝试顺序，为null时按固定顺序尝试
+     * @return
+     */
+    public static Result parseCodeResult(String bitmapPath, Map<DecodeHintType, Object> hints, DecodeStrategyScheduler scheduler){
+        return parseCodeResult(bitmapPath, hints, scheduler, null);
+    }
+
+    /**
+     * 解析条形码/二维码图片
+     * @param bitmapPath
+     * @param hints 解析编码类型
+     * @param scheduler 解码策略调度器，为null时按固定顺序尝试
+     * @param cancellation 在每种解码策略之前检查，取消后返回null
+     * @return
+     */
+    static Result parseCodeResult(String bitmapPath, Map<DecodeHintType, ?> hints, DecodeStrategyScheduler scheduler, CodeDecoder.Cancellation cancellation){
+        Result result = null;
+        try{
+            result = decodeBitmap(compressBitmap(bitmapPath), hints, scheduler, cancellation);
+        }catch (Exception e){
+            e.printStackTrace();
+        }
+
+        return result;
+    }
+
+    /**
+     * 解析输入流中的一维码/二维码图片，使用与{@link #parseCode(String)}相同的编码类型
+     * @param inputStream 不会被关闭
+     * @return
+     */
+    public static String parseCode(InputStream inputStream){
+        Result result = parseCodeResult(inputStream, getDefaultDecodeHints());
+        return result != null ? result.getText() : null;
+    }
+
+    /**
+     * 解析输入流中的条形码/二维码图片，读取尺寸和缩放解码都使用该流，不需要复制到临时文件
+     * @param inputStream 不会被关闭
+     * @param hints 解析编码类型
+     * @return
+     */
+    public static Result parseCodeResult(InputStream inputStream, Map<DecodeHintType, Object> hints){
+        Result result = null;
+        try{
+            result = decodeBitmap(SampledImage.open(inputStream).decode(), hints, null, null);
+        }catch (Exception e){
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * 解析文件描述符中的一维码/二维码图片，使用与{@link #parseCode(String)}相同的编码类型
+     * @param descriptor 不会被关闭
+     * @return
+     */
+    public static String parseCode(ParcelFileDescriptor descriptor){
+        Result result = parseCodeResult(descriptor, getDefaultDecodeHints());
+        return result != null ? result.getText() : null;
+    }
+
+    /**
+     * 解析文件描述符中的条形码/二维码图片，读取尺寸和缩放解码都使用该描述符，不需要再次打开
+     * @param descriptor 不会被关闭
+     * @param hints 解析编码类型
+     * @return
+     */
+    public static Result parseCodeResult(ParcelFileDescriptor descriptor, Map<DecodeHintType, Object> hints){
+        Result result = null;
+        try{
+            result = decodeBitmap(SampledImage.open(descriptor).decode(), hints, null, null);
+        }catch (Exception e){
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * 解析Uri对应的一维码/二维码图片，使用与{@link #parseCode(String)}相同的编码类型
+     * @param context
+     * @param uri 如相册返回的content://
+     * @return
+     */
+    public static String parseCode(Context context, Uri uri){
+        Result result = parseCodeResult(context, uri, getDefaultDecodeHints());
+        return result != null ? result.getText() : null;
+    }
+
+    /**
+     * 解析Uri对应的条形码/二维码图片，通过{@link ContentResolver}只打开一次，不需要文件路径，适用于分区存储
+     * @param context
+     * @param uri 如相册返回的content://
+     * @param hints 解析编码类型
+     * @return
+     */
+    public static Result parseCodeResult(Context context, Uri uri, Map<DecodeHintType, Object> hints){
+        return parseCodeResult(context, uri, hints, null);
+    }
+
+    /**
+     * 解析Uri对应的条形码/二维码图片
+     * @param context
+     * @param uri
+     * @param hints 解析编码类型
+     * @param cancellation 在每种解码策略之前检查，取消后返回null
+     * @return
+     */
+    private static Result parseCodeResult(Context context, Uri uri, Map<DecodeHintType, ?> hints, CodeDecoder.Cancellation cancellation){
         Result result = null;
+        ParcelFileDescriptor descriptor = null;
         try{
-            MultiFormatReader reader = new MultiFormatReader();
-            reader.setHints(hints);
-            RGBLuminanceSource source = getRGBLuminanceSource(compressBitmap(bitmapPath));
+            descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor != null) {
+                result = decodeBitmap(SampledImage.open(descriptor).decode(), hints, null, cancellation);
+            }
+        }catch (Exception e){
+            e.printStackTrace();
+        }finally {
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param bitmap 缩放后的图片，解析后回收
+     * @return bitmap为null或没有解析出码时为null
+     */
+    private static Result decodeBitmap(Bitmap bitmap, Map<DecodeHintType, ?> hints, DecodeStrategyScheduler scheduler, CodeDecoder.Cancellation cancellation){
+        PlanarYUVLuminanceSource source = getLuminanceSource(bitmap);
+        if (source == null) {
+            return null;
+        }
+        return new CodeDecoder(new FormatReader(hints), hints, scheduler)
+                .setCancellation(cancellation)
+                .decode(source);
+    }
+
+    /**
+     * 分块解析大图中的条形码/二维码，不缩小整张图片，只按块以原始分辨率解码，内存占用不超过maxMemoryBytes
+     *
+     * 先解析缩小后的整张图片，再逐级减小缩放比例解析相互重叠的小块，直到原始分辨率，
+     * 所以大码很快解析出来，细小或密集的码在足够精细的一级解析出来；同一级中靠近中心的块先解析。
+     * 只支持JPEG、PNG和WebP，其它格式按{@link #parseCodeResult(String, Map)}解析
+     * @param bitmapPath
+     * @param hints 解析编码类型，大图中的小码需要{@link DecodeHintType#TRY_HARDER}
+     * @param maxMemoryBytes 解析一块时最多占用的内存，见{@link #DEFAULT_TILE_MEMORY_BYTES}
+     * @return 最先解析出的码，没有时为null
+     */
+    public static Result parseCodeResultTiled(String bitmapPath, Map<DecodeHintType, Object> hints, int maxMemoryBytes){
+        RegionTileSource source = null;
+        try{
+            source = new RegionTileSource(bitmapPath);
+            TiledDecoder decoder = new TiledDecoder(hints, null, getMaxTilePixels(maxMemoryBytes));
+            return decoder.decode(source.getWidth(), source.getHeight(), source);
+        }catch (IOException e){
+            LogUtils.w("CodeUtils", "Failed to decode tiles of " + bitmapPath, e);
+            return source == null ? parseCodeResult(bitmapPath, hints) : null;
+        }finally {
             if (source != null) {
-                boolean isReDecode;
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * 分块解析大图，见{@link #parseCodeResultTiled(String, Map, int)}，使用与{@link #parseCode(String)}相同的编码类型
+     * @param bitmapPath
+     * @return 最先解析出的码，没有时为null
+     */
+    public static Result parseCodeResultTiled(String bitmapPath){
+        return parseCodeResultTiled(bitmapPath, getDefaultDecodeHints(), DEFAULT_TILE_MEMORY_BYTES);
+    }
+
+    /**
+     * 分块解析大图中的全部条形码/二维码，每一块都会解析，按类型和内容去重，见{@link #parseCodeResultTiled(String, Map, int)}
+     * @param bitmapPath
+     * @param hints 解析编码类型，大图中的小码需要{@link DecodeHintType#TRY_HARDER}
+     * @param maxMemoryBytes 解析一块时最多占用的内存，见{@link #DEFAULT_TILE_MEMORY_BYTES}
+     * @return 解析出的全部码，坐标为在整张图片中的坐标，没有时为空数组
+     */
+    public static Result[] parseCodeResultsTiled(String bitmapPath, Map<DecodeHintType, Object> hints, int maxMemoryBytes){
+        RegionTileSource source = null;
+        try{
+            source = new RegionTileSource(bitmapPath);
+            TiledDecoder decoder = new TiledDecoder(hints, null, getMaxTilePixels(maxMemoryBytes));
+            return decoder.decodeAll(source.getWidth(), source.getHeight(), source);
+        }catch (IOException e){
+            LogUtils.w("CodeUtils", "Failed to decode tiles of " + bitmapPath, e);
+            return new Result[0];
+        }finally {
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * 分块解析大图中的全部码，见{@link #parseCodeResultsTiled(String, Map, int)}，使用与{@link #parseCode(String)}相同的编码类型
+     * @param bitmapPath
+     * @return
+     */
+    public static Result[] parseCodeResultsTiled(String bitmapPath){
+        return parseCodeResultsTiled(bitmapPath, getDefaultDecodeHints(), DEFAULT_TILE_MEMORY_BYTES);
+    }
+
+    /**
+     * 批量解析图片文件，见{@link #parseCodes(List, Map, int, long, CodeParseBatch.Callback)}，
+     * 使用与{@link #parseCode(String)}相同的编码类型、默认的内存预算和超时时间
+     * @param paths 图片路径
+     * @param callback
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(List<String> paths, CodeParseBatch.Callback callback){
+        return parseCodes(paths, getDefaultDecodeHints(), DEFAULT_PARSE_MEMORY_BYTES, DEFAULT_PARSE_TIMEOUT_MILLIS, callback);
+    }
+
+    /**
+     * 在线程数等于CPU核数的共用线程池中批量解析图片文件，每解析完一个即回调
+     *
+     * 每个文件按{@link #parseCodeResult(String, Map)}相同的方式缩放后解析；
+     * 同一批次共用一个{@link DecodeStrategyScheduler}，按整批图片的成功率调整解码策略的顺序
+     * @param paths 图片路径
+     * @param hints 解析编码类型
+     * @param maxMemoryBytes 同时解析的文件总共最多占用的内存
+     * @param timeoutMillis 单个文件的超时时间，小于等于0时不超时
+     * @param callback
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(List<String> paths, final Map<DecodeHintType, ?> hints, int maxMemoryBytes, long timeoutMillis, CodeParseBatch.Callback callback){
+        final DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        return CodeParseBatch.start(paths, new CodeParseBatch.Parser() {
+            @Override
+            public CodeParseBatch.Source open(String path) throws IOException {
+                FileInputStream stream = new FileInputStream(path);
                 try {
-                    BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                    result = reader.decodeWithState(bitmap);
-                    isReDecode = false;
-                } catch (Exception e) {
-                    isReDecode = true;
+                    // 读取尺寸和解码使用同一个描述符，文件只打开一次
+                    return newParseSource(SampledImage.open(stream.getFD()), stream, hints, scheduler);
+                } catch (IOException e) {
+                    stream.close();
+                    throw e;
                 }
-                if(isReDecode){
-                    try {
-                        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source.invert()));
-                        result = reader.decodeWithState(bitmap);
-                        isReDecode = false;
-                    } catch (Exception e) {
-                        isReDecode = true;
-                    }
+            }
+        }, callback, maxMemoryBytes, timeoutMillis);
+    }
+
+    /**
+     * 批量解析目录中的图片，见{@link #parseCodes(File, Map, int, long, CodeParseBatch.Callback)}，
+     * 使用与{@link #parseCode(String)}相同的编码类型、默认的内存预算和超时时间
+     * @param directory
+     * @param callback
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(File directory, CodeParseBatch.Callback callback){
+        return parseCodes(directory, getDefaultDecodeHints(), DEFAULT_PARSE_MEMORY_BYTES, DEFAULT_PARSE_TIMEOUT_MILLIS, callback);
+    }
+
+    /**
+     * 批量解析目录中的图片，按文件名排序，不包括子目录，见{@link #parseCodes(List, Map, int, long, CodeParseBatch.Callback)}
+     * @param directory
+     * @param hints 解析编码类型
+     * @param maxMemoryBytes 同时解析的文件总共最多占用的内存
+     * @param timeoutMillis 单个文件的超时时间，小于等于0时不超时
+     * @param callback
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(File directory, Map<DecodeHintType, ?> hints, int maxMemoryBytes, long timeoutMillis, CodeParseBatch.Callback callback){
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                if (!file.isFile()) {
+                    return false;
                 }
-                if(isReDecode){
-                    try{
-                        BinaryBitmap bitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                        result = reader.decodeWithState(bitmap);
-                        isReDecode = false;
-                    } catch (Exception e){
-                        isReDecode = true;
+                String name = file.getName().toLowerCase(Locale.US);
+                for (String extension : IMAGE_EXTENSIONS) {
+                    if (name.endsWith(extension)) {
+                        return true;
                     }
                 }
-                if(isReDecode && source.isRotateSupported()){
-                    try{
-                        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source.rotateCounterClockwise()));
-                        result = reader.decodeWithState(bitmap);
-                    } catch (Exception e){
+                return false;
+            }
+        });
+        List<String> paths = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                paths.add(file.getPath());
+            }
+        }
+        return parseCodes(paths, hints, maxMemoryBytes, timeoutMillis, callback);
+    }
+
+    /**
+     * 批量解析Uri对应的图片，见{@link #parseCodes(Context, List, Map, int, long, CodeParseBatch.Callback)}，
+     * 使用与{@link #parseCode(String)}相同的编码类型、默认的内存预算和超时时间
+     * @param context
+     * @param uris
+     * @param callback 回调中的path为{@link Uri#toString()}
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(Context context, List<Uri> uris, CodeParseBatch.Callback callback){
+        return parseCodes(context, uris, getDefaultDecodeHints(), DEFAULT_PARSE_MEMORY_BYTES, DEFAULT_PARSE_TIMEOUT_MILLIS, callback);
+    }
+
+    /**
+     * 批量解析Uri对应的图片，每个Uri通过{@link ContentResolver}只打开一次，
+     * 见{@link #parseCodes(List, Map, int, long, CodeParseBatch.Callback)}
+     * @param context
+     * @param uris
+     * @param hints 解析编码类型
+     * @param maxMemoryBytes 同时解析的图片总共最多占用的内存
+     * @param timeoutMillis 单个图片的超时时间，小于等于0时不超时
+     * @param callback 回调中的path为{@link Uri#toString()}
+     * @return 可用于取消和查看统计
+     */
+    public static CodeParseBatch parseCodes(Context context, List<Uri> uris, final Map<DecodeHintType, ?> hints, int maxMemoryBytes, long timeoutMillis, CodeParseBatch.Callback callback){
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        final DecodeStrategyScheduler scheduler = new DecodeStrategyScheduler();
+        List<String> paths = new ArrayList<>(uris.size());
+        for (Uri uri : uris) {
+            paths.add(uri.toString());
+        }
+        return CodeParseBatch.start(paths, new CodeParseBatch.Parser() {
+            @Override
+            public CodeParseBatch.Source open(String path) throws IOException {
+                final ParcelFileDescriptor descriptor = resolver.openFileDescriptor(Uri.parse(path), "r");
+                if (descriptor == null) {
+                    throw new IOException("No content: " + path);
+                }
+                try {
+                    return newParseSource(SampledImage.open(descriptor), descriptor, hints, scheduler);
+                } catch (IOException e) {
+                    descriptor.close();
+                    throw e;
+                }
+            }
+        }, callback, maxMemoryBytes, timeoutMillis);
+    }
 
-                    }
+    /**
+     * 批量解析中的一个文件，解析完成后关闭file
+     * @param image 已读取尺寸的图片
+     * @param file image读取的文件
+     */
+    private static CodeParseBatch.Source newParseSource(final SampledImage image, final Closeable file,
+                                                        final Map<DecodeHintType, ?> hints, final DecodeStrategyScheduler scheduler){
+        return new CodeParseBatch.Source() {
+            @Override
+            public long estimateBytes() {
+                return image.getDecodeBytes();
+            }
+
+            @Override
+            public Result parse(CodeDecoder.Cancellation cancellation) {
+                Result result = null;
+                try{
+                    result = decodeBitmap(image.decode(), hints, scheduler, cancellation);
+                }catch (Exception e){
+                    e.printStackTrace();
                 }
-                reader.reset();
+                return result;
             }
 
-        }catch (Exception e){
-            e.printStackTrace();
-        }
+            @Override
+            public void close() throws IOException {
+                file.close();
+            }
+        };
+    }
 
-        return result;
+    /**
+     * 在后台解析一维码/二维码图片，使用与{@link #parseCode(String)}相同的编码类型和默认的超时时间
+     * @param bitmapPath
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，页面关闭时应取消
+     */
+    public static CodeTask<Result> parseCodeAsync(String bitmapPath, CodeTask.Callback<Result> callback){
+        return parseCodeAsync(bitmapPath, getDefaultDecodeHints(), DEFAULT_PARSE_TIMEOUT_MILLIS, null, callback);
+    }
+
+    /**
+     * 在后台解析条形码/二维码图片，取消或超时后在下一种解码策略之前停止
+     * @param bitmapPath
+     * @param hints 解析编码类型
+     * @param timeoutMillis 超时时间，从提交时开始计算，小于等于0时不超时
+     * @param executor 执行解析的线程池，为null时使用默认的线程池
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，页面关闭时应取消
+     */
+    public static CodeTask<Result> parseCodeAsync(final String bitmapPath, final Map<DecodeHintType, ?> hints, long timeoutMillis, Executor executor, CodeTask.Callback<Result> callback){
+        return CodeTask.submit(executor, new CodeTask.Work<Result>() {
+            @Override
+            public Result run(CodeDecoder.Cancellation cancellation) {
+                return parseCodeResult(bitmapPath, hints, null, cancellation);
+            }
+        }, timeoutMillis, callback);
+    }
+
+    /**
+     * 在后台解析Uri对应的一维码/二维码图片，使用与{@link #parseCode(String)}相同的编码类型和默认的超时时间
+     * @param context
+     * @param uri 如相册返回的content://
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，页面关闭时应取消
+     */
+    public static CodeTask<Result> parseCodeAsync(Context context, Uri uri, CodeTask.Callback<Result> callback){
+        return parseCodeAsync(context, uri, getDefaultDecodeHints(), DEFAULT_PARSE_TIMEOUT_MILLIS, null, callback);
+    }
+
+    /**
+     * 在后台解析Uri对应的条形码/二维码图片，取消或超时后在下一种解码策略之前停止
+     * @param context
+     * @param uri 如相册返回的content://
+     * @param hints 解析编码类型
+     * @param timeoutMillis 超时时间，从提交时开始计算，小于等于0时不超时
+     * @param executor 执行解析的线程池，为null时使用默认的线程池
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，页面关闭时应取消
+     */
+    public static CodeTask<Result> parseCodeAsync(Context context, final Uri uri, final Map<DecodeHintType, ?> hints, long timeoutMillis, Executor executor, CodeTask.Callback<Result> callback){
+        final Context appContext = context.getApplicationContext();
+        return CodeTask.submit(executor, new CodeTask.Work<Result>() {
+            @Override
+            public Result run(CodeDecoder.Cancellation cancellation) {
+                return parseCodeResult(appContext, uri, hints, cancellation);
+            }
+        }, timeoutMillis, callback);
+    }
+
+    /**
+     * 在后台生成二维码，见{@link #createQRCode(String, int, Bitmap)}
+     * @param content
+     * @param height
+     * @param logo 可以为null
+     * @param executor 执行生成的线程池，为null时使用默认的线程池
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，未开始生成时取消则不再生成
+     */
+    public static CodeTask<Bitmap> createQRCodeAsync(final String content, final int height, final Bitmap logo, Executor executor, CodeTask.Callback<Bitmap> callback){
+        return CodeTask.submit(executor, new CodeTask.Work<Bitmap>() {
+            @Override
+            public Bitmap run(CodeDecoder.Cancellation cancellation) {
+                return createQRCode(content, height, logo);
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * 在后台生成条形码，见{@link #createBarCode(String, BarcodeFormat, int, int, Map, boolean)}
+     * @param content
+     * @param format
+     * @param desiredWidth
+     * @param desiredHeight
+     * @param hints
+     * @param isShowText
+     * @param executor 执行生成的线程池，为null时使用默认的线程池
+     * @param callback 在主线程回调，可以为null
+     * @return 可以取消的任务，未开始生成时取消则不再生成
+     */
+    public static CodeTask<Bitmap> createBarCodeAsync(final String content, final BarcodeFormat format, final int desiredWidth, final int desiredHeight, final Map<EncodeHintType,?> hints, final boolean isShowText, Executor executor, CodeTask.Callback<Bitmap> callback){
+        return CodeTask.submit(executor, new CodeTask.Work<Bitmap>() {
+            @Override
+            public Bitmap run(CodeDecoder.Cancellation cancellation) {
+                return createBarCode(content, format, desiredWidth, desiredHeight, hints, isShowText);
+            }
+        }, 0, callback);
+    }
+
+    private static int getMaxTilePixels(int maxMemoryBytes){
+        if (maxMemoryBytes < BitmapLuminance.BYTES_PER_PIXEL) {
+            throw new IllegalArgumentException("maxMemoryBytes " + maxMemoryBytes);
+        }
+        return maxMemoryBytes / BitmapLuminance.BYTES_PER_PIXEL;
     }
 
     /**
@@ -378,37 +879,48 @@ public final class CodeUtils {
         // 开始读入图片，此时把options.inJustDecodeBounds 设回true了
         newOpts.inJustDecodeBounds = true;//获取原始图片大小
         BitmapFactory.decodeFile(path, newOpts);// 此时返回bm为空
-        int w = newOpts.outWidth;
-        int h = newOpts.outHeight;
+        newOpts.inSampleSize = getSampleSize(newOpts.outWidth, newOpts.outHeight);// 设置缩放比例
+        // 重新读入图片，注意此时已经把options.inJustDecodeBounds 设回false了
+        newOpts.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(path, newOpts);
+    }
+
+    /**
+     * 解析图片时的缩放比例
+     * @param w 原始图片宽度
+     * @param h 原始图片高度
+     * @return 2的幂，与BitmapFactory实际使用的缩放比例相同，可据此预估解码后的尺寸
+     */
+    static int getSampleSize(int w, int h){
         float width = 800f;
         float height = 480f;
         // 缩放比，由于是固定比例缩放，只用高或者宽其中一个数据进行计算即可
         int be = 1;// be=1表示不缩放
         if (w > h && w > width) {// 如果宽度大的话根据宽度固定大小缩放
-            be = (int) (newOpts.outWidth / width);
+            be = (int) (w / width);
         } else if (w < h && h > height) {// 如果高度高的话根据宽度固定大小缩放
-            be = (int) (newOpts.outHeight / height);
+            be = (int) (h / height);
         }
         if (be <= 0)
             be = 1;
-        newOpts.inSampleSize = be;// 设置缩放比例
-        // 重新读入图片，注意此时已经把options.inJustDecodeBounds 设回false了
-        newOpts.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(path, newOpts);
+        // BitmapFactory将inSampleSize向下取为2的幂
+        return Integer.highestOneBit(be);
     }
 
     /**
-     * 获取RGBLuminanceSource
+     * 获取图片的亮度，逐段转换，不需要整张图片的int[]；转换后回收bitmap，解析时每像素只占1字节
      * @param bitmap
-     * @return
+     * @return bitmap为null时返回null
      */
-    private static RGBLuminanceSource getRGBLuminanceSource(@NonNull Bitmap bitmap){
+    private static PlanarYUVLuminanceSource getLuminanceSource(Bitmap bitmap){
+        if (bitmap == null) {
+            return null;
+        }
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
-
-        int[] pixels = new int[width * height];
-        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
-        return new RGBLuminanceSource(width, height, pixels);
+        byte[] luminance = BitmapLuminance.read(bitmap);
+        bitmap.recycle();
+        return new PlanarYUVLuminanceSource(luminance, width, height, 0, 0, width, height, false);
     }
 
     /**
@@ -519,32 +1031,51 @@ public final class CodeUtils {
      * @return
      */
     public static Bitmap createBarCode(String content, BarcodeFormat format, int desiredWidth, int desiredHeight, Map<EncodeHintType,?> hints, boolean isShowText, int textSize, @ColorInt int codeColor) {
+        return createBarCode(content, format, desiredWidth, desiredHeight, hints, isShowText, textSize, codeColor, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 以指定的图片格式生成条形码，用于大尺寸或批量生成时节省内存
+     * @param content
+     * @param format
+     * @param desiredWidth
+     * @param desiredHeight
+     * @param hints
+     * @param codeColor 条形码的颜色，{@link Bitmap.Config#ALPHA_8}时忽略
+     * @param config 见{@link #createQRCode(String, int, Map, int, Bitmap.Config)}
+     * @return
+     */
+    public static Bitmap createBarCode(String content, BarcodeFormat format, int desiredWidth, int desiredHeight, Map<EncodeHintType,?> hints, @ColorInt int codeColor, Bitmap.Config config) {
+        return createBarCode(content, format, desiredWidth, desiredHeight, hints, false, 0, codeColor, config);
+    }
+
+    private static Bitmap createBarCode(String content, BarcodeFormat format, int desiredWidth, int desiredHeight, Map<EncodeHintType,?> hints, boolean isShowText, int textSize, int codeColor, Bitmap.Config config) {
         if(TextUtils.isEmpty(content)){
             return null;
         }
-        final int WHITE = Color.WHITE;
-        final int BLACK = codeColor;
+        checkConfig(config);
+
+        CodeBitmapCache cache = sBitmapCache;
+        CodeBitmapCache.Key key = null;
+        if (cache != null) {
+            key = new CodeBitmapCache.Key(content, format, desiredWidth, desiredHeight, codeColor, null, 0, hints, isShowText, textSize, config);
+            Bitmap bitmap = cache.get(key);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
 
-        MultiFormatWriter writer = new MultiFormatWriter();
+        CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+        MultiFormatWriter writer = buffers != null ? buffers.mWriter : new MultiFormatWriter();
         try {
             BitMatrix result = writer.encode(content, format, desiredWidth,
                     desiredHeight, hints);
-            int width = result.getWidth();
-            int height = result.getHeight();
-            int[] pixels = new int[width * height];
-            // All are 0, or black, by default
-            for (int y = 0; y < height; y++) {
-                int offset = y * width;
-                for (int x = 0; x < width; x++) {
-                    pixels[offset + x] = result.get(x, y) ? BLACK : WHITE;
-                }
-            }
-
-            Bitmap bitmap = Bitmap.createBitmap(width, height,
-                    Bitmap.Config.ARGB_8888);
-            bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+            Bitmap bitmap = createBitmap(result, codeColor, config);
             if(isShowText){
-                return addCodeText(bitmap, content, textSize, codeColor,textSize/2);
+                bitmap = addCodeText(bitmap, content, textSize, codeColor,textSize/2);
+            }
+            if (key != null) {
+                cache.put(key, bitmap);
             }
             return bitmap;
         } catch (WriterException e) {
@@ -553,6 +1084,223 @@ public final class CodeUtils {
         return null;
     }
 
+    /**
+     * 批量生成二维码，参数同{@link #createQRCode(String, int)}
+     * @param contents 二维码的内容
+     * @param height 二维码的高
+     * @param callback 每生成一个即在生成线程中回调
+     * @return 可用于取消或等待
+     */
+    public static CodeBatch createQRCodes(List<String> contents, final int height, CodeBatch.Callback callback) {
+        return CodeBatch.start(contents, new CodeBatch.Creator() {
+            @Override
+            public Bitmap create(String content) {
+                return createQRCode(content, height);
+            }
+        }, callback);
+    }
+
+    /**
+     * 批量生成二维码，参数同{@link #createQRCode(String, int, Bitmap, float, Map, int)}
+     * @param contents 二维码的内容
+     * @param height 二维码的高
+     * @param logo 二维码中间的logo，所有二维码共用
+     * @param ratio logo所占比例
+     * @param hints
+     * @param codeColor 二维码的颜色
+     * @param callback 每生成一个即在生成线程中回调
+     * @return 可用于取消或等待
+     */
+    public static CodeBatch createQRCodes(List<String> contents, final int height, final Bitmap logo, @FloatRange(from = 0.0f,to = 1.0f)final float ratio, final Map<EncodeHintType,?> hints, final int codeColor, CodeBatch.Callback callback) {
+        return CodeBatch.start(contents, new CodeBatch.Creator() {
+            @Override
+            public Bitmap create(String content) {
+                return createQRCode(content, height, logo, ratio, hints, codeColor);
+            }
+        }, callback);
+    }
+
+    /**
+     * 批量生成条形码，参数同{@link #createBarCode(String, BarcodeFormat, int, int)}
+     * @param contents 条形码的内容
+     * @param format
+     * @param desiredWidth
+     * @param desiredHeight
+     * @param callback 每生成一个即在生成线程中回调
+     * @return 可用于取消或等待
+     */
+    public static CodeBatch createBarCodes(List<String> contents, final BarcodeFormat format, final int desiredWidth, final int desiredHeight, CodeBatch.Callback callback) {
+        return CodeBatch.start(contents, new CodeBatch.Creator() {
+            @Override
+            public Bitmap create(String content) {
+                return createBarCode(content, format, desiredWidth, desiredHeight);
+            }
+        }, callback);
+    }
+
+    /**
+     * 批量生成条形码，参数同{@link #createBarCode(String, BarcodeFormat, int, int, Map, boolean, int, int)}
+     * @param contents 条形码的内容
+     * @param format
+     * @param desiredWidth
+     * @param desiredHeight
+     * @param hints
+     * @param isShowText
+     * @param textSize
+     * @param codeColor
+     * @param callback 每生成一个即在生成线程中回调
+     * @return 可用于取消或等待
+     */
+    public static CodeBatch createBarCodes(List<String> contents, final BarcodeFormat format, final int desiredWidth, final int desiredHeight, final Map<EncodeHintType,?> hints, final boolean isShowText, final int textSize, @ColorInt final int codeColor, CodeBatch.Callback callback) {
+        return CodeBatch.start(contents, new CodeBatch.Creator() {
+            @Override
+            public Bitmap create(String content) {
+                return createBarCode(content, format, desiredWidth, desiredHeight, hints, isShowText, textSize, codeColor);
+            }
+        }, callback);
+    }
+
+    /**
+     * 将已编码的二维码绘制成图片，同一个QRCode可以绘制成任意尺寸和颜色而无需重新编码
+     * @param code 已编码的二维码，见{@link QRCodeMatrixCache#encode(String, Map)}
+     * @param height 二维码的高
+     * @param quietZone 空白边距的宽度，单位为模块
+     * @param codeColor 二维码的颜色
+     * @return
+     */
+    public static Bitmap createQRCode(QRCode code, int height, int quietZone, @ColorInt int codeColor) {
+        return createQRCode(code, height, quietZone, codeColor, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 以指定的图片格式将已编码的二维码绘制成图片
+     * @param code 已编码的二维码，见{@link QRCodeMatrixCache#encode(String, Map)}
+     * @param height 二维码的高
+     * @param quietZone 空白边距的宽度，单位为模块
+     * @param codeColor 二维码的颜色，{@link Bitmap.Config#ALPHA_8}时忽略
+     * @param config 见{@link #createQRCode(String, int, Map, int, Bitmap.Config)}
+     * @return
+     */
+    public static Bitmap createQRCode(QRCode code, int height, int quietZone, @ColorInt int codeColor, Bitmap.Config config) {
+        checkConfig(config);
+        // 二维码放不下时图片会比height大
+        final int size = QRCodeRenderer.getOutputSize(code, height, quietZone);
+        BitmapSink sink = new BitmapSink(Bitmap.createBitmap(size, size, config));
+        CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+        int[] band = QRCodeRenderer.render(code, height, height, quietZone, getOnColor(codeColor, config), getOffColor(config),
+                buffers != null ? buffers.mBand : null, sink);
+        if (buffers != null) {
+            buffers.mBand = band;
+        }
+        return sink.finish();
+    }
+
+    /**
+     * 生成二维码的1位矩阵，每像素1bit，供自行绘制或打印，例如配合{@link BitMatrixRenderer#toPackedRows(BitMatrix)}
+     * @param content 二维码的内容
+     * @param height 二维码的高
+     * @param hints
+     * @return
+     */
+    public static BitMatrix encodeQRCode(String content, int height, Map<EncodeHintType,?> hints) throws WriterException {
+        QRCodeMatrixCache matrixCache = sMatrixCache;
+        if (matrixCache != null) {
+            return matrixCache.encode(content, height, height, hints);
+        }
+        CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+        QRCodeWriter writer = buffers != null ? buffers.mQRCodeWriter : new QRCodeWriter();
+        return writer.encode(content, BarcodeFormat.QR_CODE, height, height, hints);
+    }
+
+    /**
+     * 生成条形码的1位矩阵，每像素1bit，供自行绘制或打印
+     * @param content
+     * @param format
+     * @param desiredWidth
+     * @param desiredHeight
+     * @param hints
+     * @return
+     */
+    public static BitMatrix encodeBarCode(String content, BarcodeFormat format, int desiredWidth, int desiredHeight, Map<EncodeHintType,?> hints) throws WriterException {
+        CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+        MultiFormatWriter writer = buffers != null ? buffers.mWriter : new MultiFormatWriter();
+        return writer.encode(content, format, desiredWidth, desiredHeight, hints);
+    }
+
+    private static void checkConfig(Bitmap.Config config) {
+        if (config != Bitmap.Config.ARGB_8888 && config != Bitmap.Config.RGB_565 && config != Bitmap.Config.ALPHA_8) {
+            throw new IllegalArgumentException("Unsupported config: " + config);
+        }
+    }
+
+    /**
+     * ALPHA_8只保留alpha，码为不透明、背景为透明
+     */
+    private static int getOnColor(int codeColor, Bitmap.Config config) {
+        return config == Bitmap.Config.ALPHA_8 ? Color.BLACK : codeColor;
+    }
+
+    private static int getOffColor(Bitmap.Config config) {
+        return config == Bitmap.Config.ALPHA_8 ? Color.TRANSPARENT : Color.WHITE;
+    }
+
+    /**
+     * 将BitMatrix逐段绘制到Bitmap，每次只持有若干行像素，而不是整张图的int[]
+     * @param matrix
+     * @param codeColor
+     * @param config
+     * @return
+     */
+    private static Bitmap createBitmap(BitMatrix matrix, int codeColor, Bitmap.Config config) {
+        BitmapSink sink = new BitmapSink(Bitmap.createBitmap(matrix.getWidth(), matrix.getHeight(), config));
+        CodeBatch.Buffers buffers = CodeBatch.getBuffers();
+        int[] band = BitMatrixRenderer.render(matrix, getOnColor(codeColor, config), getOffColor(config),
+                buffers != null ? buffers.mBand : null, sink);
+        if (buffers != null) {
+            buffers.mBand = band;
+        }
+        return sink.finish();
+    }
+
+    /**
+     * 将逐段绘制的像素写入Bitmap；ALPHA_8在部分系统版本上不支持setPixels，先写入字节缓冲再整体复制
+     */
+    private static final class BitmapSink implements BitMatrixRenderer.PixelSink {
+        private final Bitmap mBitmap;
+        private final ByteBuffer mAlpha;
+
+        BitmapSink(Bitmap bitmap) {
+            this.mBitmap = bitmap;
+            this.mAlpha = bitmap.getConfig() == Bitmap.Config.ALPHA_8
+                    ? ByteBuffer.allocate(bitmap.getRowBytes() * bitmap.getHeight()) : null;
+        }
+
+        @Override
+        public void setPixels(int[] pixels, int top, int rows) {
+            int width = mBitmap.getWidth();
+            if (mAlpha == null) {
+                mBitmap.setPixels(pixels, 0, width, 0, top, width, rows);
+                return;
+            }
+            int rowBytes = mBitmap.getRowBytes();
+            byte[] alpha = mAlpha.array();
+            for (int y = 0; y < rows; y++) {
+                int from = y * width;
+                int to = (top + y) * rowBytes;
+                for (int x = 0; x < width; x++) {
+                    alpha[to + x] = (byte) (pixels[from + x] >>> 24);
+                }
+            }
+        }
+
+        Bitmap finish() {
+            if (mAlpha != null) {
+                mBitmap.copyPixelsFromBuffer(mAlpha);
+            }
+            return mBitmap;
+        }
+    }
+
     /**
      * 条形码下面添加文本信息
      * @param src
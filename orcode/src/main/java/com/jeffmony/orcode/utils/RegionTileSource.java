@@ -0,0 +1,60 @@
+package com.jeffmony.orcode.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import com.jeffmony.orcode.decode.TiledDecoder;
+import com.jeffmony.orcode.decode.TilePlan;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 通过{@link BitmapRegionDecoder}按块读取图片文件的亮度，每次只解码一块
+ */
+final class RegionTileSource implements TiledDecoder.TileSource, Closeable {
+
+    private final BitmapRegionDecoder mDecoder;
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+    private final Rect mRect = new Rect();
+    private int[] mBand;
+
+    /**
+     * @param path 图片路径，支持JPEG、PNG和WebP
+     */
+    RegionTileSource(String path) throws IOException {
+        mDecoder = BitmapRegionDecoder.newInstance(path, false);
+        mOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    }
+
+    int getWidth() {
+        return mDecoder.getWidth();
+    }
+
+    int getHeight() {
+        return mDecoder.getHeight();
+    }
+
+    @Override
+    public void read(TilePlan.Tile tile, byte[] luminance) throws IOException {
+        mRect.set(tile.getLeft(), tile.getTop(), tile.getLeft() + tile.getWidth(), tile.getTop() + tile.getHeight());
+        mOptions.inSampleSize = tile.getSampleSize();
+        Bitmap bitmap = mDecoder.decodeRegion(mRect, mOptions);
+        if (bitmap == null) {
+            throw new IOException("Failed to decode " + tile);
+        }
+        try {
+            // 解码器对尺寸的取整方式不一，多出的部分丢弃，缺少的部分按白色补齐
+            mBand = BitmapLuminance.read(bitmap, tile.getDecodedWidth(), tile.getDecodedHeight(), luminance, mBand);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void close() {
+        mDecoder.recycle();
+    }
+}
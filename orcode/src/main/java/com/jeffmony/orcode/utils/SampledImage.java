@@ -0,0 +1,92 @@
+package com.jeffmony.orcode.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.ParcelFileDescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从文件描述符或输入流读取图片尺寸，再按{@link CodeUtils#getSampleSize(int, int)}缩放解码，
+ * 两次读取使用同一个描述符或流，不需要复制到临时文件，也不需要再次打开
+ *
+ * 不负责关闭描述符或流
+ */
+final class SampledImage {
+
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    private final FileDescriptor mDescriptor;
+    private final InputStream mStream;
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+
+    private SampledImage(FileDescriptor descriptor, InputStream stream) throws IOException {
+        this.mDescriptor = descriptor;
+        this.mStream = stream;
+        mOptions.inJustDecodeBounds = true;
+        if (descriptor != null) {
+            // decodeFileDescriptor读取后恢复描述符的位置
+            BitmapFactory.decodeFileDescriptor(descriptor, null, mOptions);
+        } else {
+            // 读取尺寸通常只需文件头，mark时不限制长度，读到的部分留在缓冲中供reset
+            stream.mark(Integer.MAX_VALUE);
+            BitmapFactory.decodeStream(stream, null, mOptions);
+            stream.reset();
+        }
+        if (mOptions.outWidth <= 0 || mOptions.outHeight <= 0) {
+            throw new IOException("Not a decodable image");
+        }
+        mOptions.inSampleSize = CodeUtils.getSampleSize(mOptions.outWidth, mOptions.outHeight);
+        mOptions.inJustDecodeBounds = false;
+    }
+
+    /**
+     * @param descriptor 必须可以seek，如普通文件
+     */
+    static SampledImage open(FileDescriptor descriptor) throws IOException {
+        return new SampledImage(descriptor, null);
+    }
+
+    static SampledImage open(InputStream stream) throws IOException {
+        if (!stream.markSupported()) {
+            stream = new BufferedInputStream(stream, STREAM_BUFFER_SIZE);
+        }
+        return new SampledImage(null, stream);
+    }
+
+    /**
+     * 管道等无法seek的描述符按输入流读取
+     */
+    static SampledImage open(ParcelFileDescriptor descriptor) throws IOException {
+        if (descriptor.getStatSize() >= 0) {
+            return open(descriptor.getFileDescriptor());
+        }
+        return open(new FileInputStream(descriptor.getFileDescriptor()));
+    }
+
+    /**
+     * @return 解码并转换为亮度时需要的内存字节数
+     */
+    long getDecodeBytes() {
+        // getSampleSize返回2的幂，即BitmapFactory实际使用的缩放比例
+        int sampleSize = mOptions.inSampleSize;
+        long width = (mOptions.outWidth + sampleSize - 1) / sampleSize;
+        long height = (mOptions.outHeight + sampleSize - 1) / sampleSize;
+        return width * height * BitmapLuminance.BYTES_PER_PIXEL;
+    }
+
+    /**
+     * 只能调用一次
+     * @return 缩放后的图片，解码失败时为null
+     */
+    Bitmap decode() {
+        if (mDescriptor != null) {
+            return BitmapFactory.decodeFileDescriptor(mDescriptor, null, mOptions);
+        }
+        return BitmapFactory.decodeStream(mStream, null, mOptions);
+    }
+}